@@ -36,8 +36,9 @@ public class Main {
 //            while (!(command = input.nextLine()).equals("exit")) {
 
                 // showDB
-                if (command.toUpperCase(Locale.ROOT).equals("showDB")) {
+                if (command.trim().equalsIgnoreCase("showDB")) {
                     dataBase.getDBMessage();
+                    continue;
                 }
 
                 CommandParser commandParser = new CommandParser();
@@ -116,6 +117,33 @@ public class Main {
                             + (endTime - startTime) + "ms");
                 }
 
+                // R18 := movmin(R1, C1, k)
+                else if (commandParser.isMovMin()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.movingWindow(commandParser, "min");
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("MovMin Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // R19 := movmax(R1, C1, k)
+                else if (commandParser.isMovMax()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.movingWindow(commandParser, "max");
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("MovMax Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // R20 := movcount(R1, C1, k)
+                else if (commandParser.isMovCount()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.movingWindow(commandParser, "count");
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("MovCount Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
                 // R8 := concat(R1, R2)
                 else if (commandParser.isConcat()) {
                     long startTime = System.currentTimeMillis();
@@ -152,6 +180,51 @@ public class Main {
                             + (endTime - startTime) + "ms");
                 }
 
+                // R21 := agg(R1, sum(C1), avg(C1), count(), min(C2), max(C2), by CList)
+                else if (commandParser.isAgg()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.agg(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("Agg Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // R15 := distinct(R1, C1, C2)
+                else if (commandParser.isDistinct()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.distinct(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("Distinct Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // R16 := countdistinct(R1, C1)
+                else if (commandParser.isCountDistinct()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.countDistinct(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("CountDistinct Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // R17 := approxcountdistinct(R1, C1)
+                else if (commandParser.isApproxCountDistinct()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.approxCountDistinct(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("ApproxCountDistinct Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // R14 := topk(R1, C1, k, desc)
+                else if (commandParser.isTopK()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.topk(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("TopK Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
                 // R12 := join(R1, R2, R1.C1 > R2.C2)
                 else if (commandParser.isJoin()) {
                     long startTime = System.currentTimeMillis();
@@ -161,6 +234,51 @@ public class Main {
                             + (endTime - startTime) + "ms");
                 }
 
+                // R22 := semijoin(R1, R2, R1.C1 = R2.C2)
+                else if (commandParser.isSemiJoin()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.semijoin(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("SemiJoin Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // R23 := antijoin(R1, R2, R1.C1 = R2.C2)
+                else if (commandParser.isAntiJoin()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.antijoin(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("AntiJoin Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // savetable(R1, r1.tbl)
+                else if (commandParser.isSaveTable()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.saveTable(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("SaveTable Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // R13 := loadtable(r1.tbl)
+                else if (commandParser.isLoadTable()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.loadTable(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("LoadTable Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
+                // append(R1, sales3.txt)
+                else if (commandParser.isAppend()) {
+                    long startTime = System.currentTimeMillis();
+                    dataBase.append(commandParser);
+                    long endTime = System.currentTimeMillis();
+                    System.out.println("Append Command Execution time: "
+                            + (endTime - startTime) + "ms");
+                }
+
                 // Hash(R1, C1)
 //                else if (commandParser.isHash()) {
 //                    long startTime = System.currentTimeMillis();
@@ -1,101 +1,394 @@
 package com.nyu.database.dao;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import com.nyu.database.storage.BufferPool;
+import com.nyu.database.storage.Column;
+import com.nyu.database.storage.IntVector;
+import com.nyu.database.storage.PageFile;
+import com.nyu.database.storage.PagedColumn;
+import com.nyu.database.util.MorselExecutor;
+
+/**
+ * Load a vertical bar delimited file into int columns.
+ *
+ * The file is memory mapped and cut into chunks that end on a line feed.
+ * Every chunk is parsed on its own thread straight from the mapped bytes
+ * into per-chunk column vectors, which are then joined in file order.
+ *
+ * Files larger than the memory budget are not kept on the heap: the chunks
+ * are appended to paged columns on disk as soon as they are parsed.
+ */
 public class DataReader {
 
+    //----------------
+    // Attributes
+    //----------------
+
+    // Big enough to amortize the cost of a task, small enough to keep
+    // all the threads busy on files of a few megabytes.
+    private static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+    // Files above this size (in bytes) are loaded into paged columns.
+    private static final long DEFAULT_MEMORY_BUDGET = Long.getLong(
+            "minidb.memory.budget", Runtime.getRuntime().maxMemory() / 4);
+
+    // Where the pages of paged columns are stored.
+    private static final String PAGE_DIRECTORY = System.getProperty(
+            "minidb.tmpdir", System.getProperty("java.io.tmpdir"));
+
+    private final int chunkSize;
+    private final int threadNumber;
+    private final long memoryBudget;
+
     private List<String> tableHead;
-    private List<List<String>> values;
-    private List<List<Integer>> formalTypeValues;
+    private List<Column> columns;
+
+    //----------------
+    // Constructor(s)
+    //----------------
 
     public DataReader() {
-        tableHead = new ArrayList<>();
-        values = new ArrayList<>();
-        formalTypeValues = new ArrayList<>();
+        this(DEFAULT_CHUNK_SIZE, MorselExecutor.getParallelism(),
+                DEFAULT_MEMORY_BUDGET);
     }
 
+    public DataReader(int chunkSize, int threadNumber, long memoryBudget) {
+        this.chunkSize = chunkSize;
+        this.threadNumber = Math.max(threadNumber, 1);
+        this.memoryBudget = memoryBudget;
+        this.tableHead = new ArrayList<>();
+        this.columns = new ArrayList<>();
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
     public List<String> getTableHead() {
         return tableHead;
     }
 
-    public List<List<String>> getValues() {
-        return values;
+    /**
+     * @return one column per name of the table head, in the same order.
+     * The columns are IntVectors, or PagedColumns for files larger than
+     * the memory budget.
+     */
+    public List<Column> getColumns() {
+        return columns;
     }
 
-    public List<List<Integer>> getFormalTypeValues() {
-        return formalTypeValues;
-    }
+    //----------------
+    // Other Methods
+    //----------------
 
     /**
      * Load data files into memory and link the data with corresponding column
      * @param fileName Either "sales1.txt" or "sales2.txt"
+     * @return false if the file couldn't be read, the reason is already
+     * printed and the columns must not be used.
      */
-    public void readFile(String fileName) {
-        File file = new File(fileName);
-        try {
-            BufferedReader br = new BufferedReader(new java.io.FileReader(file));
-            String line;
-            int counter = 0;
-            while ((line = br.readLine()) != null) {
-                String[] strSplit = line.trim().split("\\|");
-                counter += 1;
-                if (counter == 1) {
-                    for (String s : strSplit) {
-                        getTableHead().add(s);
-                    }
-                } else {
-                    ArrayList<String> tmp = new ArrayList<>();
-                    Collections.addAll(tmp, strSplit);
-                    getValues().add(tmp);
-                }
+    public boolean readFile(String fileName) {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            long dataStart = readHead(channel);
+            if (getTableHead().isEmpty()) {
+                System.out.println("Error! The target file doesn't have a table head, "
+                        + "please recheck!");
+                return false;
             }
+
+            List<long[]> chunks = splitChunks(channel, dataStart, fileSize);
+            if (fileSize > memoryBudget) {
+                readPaged(channel, chunks);
+            } else {
+                List<IntVector[]> results = new ArrayList<>();
+                parseChunks(channel, chunks, results::add);
+                mergeChunks(results);
+            }
+            return true;
         } catch (IOException e1) {
             System.out.println("Error! Something is wrong when reading file! "
                     + "Please recheck!");
-            return;
-        } catch (IndexOutOfBoundsException e2) {
-            System.out.println("Error! There may be extra line feed in the target "
-                    + "file, please recheck!");
+        } catch (IllegalArgumentException e2) {
+            System.out.println("Error! " + e2.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Read the first line of the file as the column names.
+     *
+     * @return the position of the first byte after the head.
+     */
+    private long readHead(FileChannel channel) throws IOException {
+        long lineEnd = findLineEnd(channel, 0);
+        ByteBuffer buffer = ByteBuffer.allocate((int) lineEnd);
+        channel.read(buffer, 0);
+        String head = new String(buffer.array(), StandardCharsets.UTF_8).trim();
+        if (!head.isEmpty()) {
+            for (String s : head.split("\\|")) {
+                getTableHead().add(s.trim());
+            }
+        }
+        return Math.min(lineEnd + 1, channel.size());
+    }
+
+    /**
+     * @return the position of the first line feed at or after start, or the
+     * size of the file if there is none.
+     */
+    private static long findLineEnd(FileChannel channel, long start) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = start;
+        while (true) {
+            buffer.clear();
+            int n = channel.read(buffer, position);
+            if (n <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < n; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i;
+                }
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Cut [start, end) into chunks of about chunkSize bytes, every chunk but
+     * the last one ends right after a line feed.
+     */
+    private List<long[]> splitChunks(FileChannel channel, long start, long end) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        while (start < end) {
+            long chunkEnd = start + chunkSize;
+            if (chunkEnd >= end) {
+                chunkEnd = end;
+            } else {
+                chunkEnd = Math.min(findLineEnd(channel, chunkEnd) + 1, end);
+            }
+            chunks.add(new long[]{start, chunkEnd});
+            start = chunkEnd;
+        }
+        return chunks;
+    }
+
+    /**
+     * Receive the parsed chunks, in file order.
+     */
+    private interface ChunkConsumer {
+        void accept(IntVector[] chunk) throws IOException;
+    }
+
+    /**
+     * Parse the chunks on a thread pool. At most two chunks per thread are
+     * parsed ahead of the consumer, so the memory used by chunks that are
+     * waiting to be consumed stays bounded.
+     */
+    private void parseChunks(FileChannel channel, List<long[]> chunks, ChunkConsumer consumer)
+            throws IOException {
+        if (chunks.size() <= 1) {
+            for (long[] chunk : chunks) {
+                consumer.accept(parseChunk(channel, chunk[0], chunk[1]));
+            }
             return;
         }
-        formatValue();
+
+        // The chunks are parsed on the pool of the operators.
+        int poolSize = Math.min(threadNumber, chunks.size());
+        ExecutorService executor = MorselExecutor.getPool();
+        Deque<Future<IntVector[]>> inFlight = new ArrayDeque<>();
+        try {
+            int next = 0;
+            while (next < chunks.size() || !inFlight.isEmpty()) {
+                while (next < chunks.size() && inFlight.size() < 2 * poolSize) {
+                    long[] chunk = chunks.get(next++);
+                    inFlight.add(executor.submit(() -> parseChunk(channel, chunk[0], chunk[1])));
+                }
+                consumer.accept(inFlight.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading file.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            // The pool is shared, only drop the chunks of this file.
+            for (Future<IntVector[]> future : inFlight) {
+                future.cancel(true);
+            }
+        }
     }
 
     /**
-     * To judge whether a string can be parsed into integer.
-     * @param str the target string
-     * @return true if the string can be parsed into integer, otherwise false.
+     * Append every parsed chunk to paged columns, so that only the chunks
+     * in flight are on the heap.
      */
-    public static boolean canParseInt(String str) {
-        if (str != null) {
-            return str.matches("\\d+");
+    private void readPaged(FileChannel channel, List<long[]> chunks) throws IOException {
+        PageFile pageFile = new PageFile(new File(PAGE_DIRECTORY));
+        List<PagedColumn.Builder> builders = new ArrayList<>();
+        for (int j = 0; j < getTableHead().size(); j++) {
+            builders.add(new PagedColumn.Builder(pageFile, BufferPool.getDefault()));
+        }
+        // No table will own the file if the import fails, delete it now.
+        try {
+            parseChunks(channel, chunks, chunk -> {
+                for (int j = 0; j < chunk.length; j++) {
+                    builders.get(j).addAll(chunk[j].getData(), 0, chunk[j].size());
+                }
+            });
+            columns = new ArrayList<>();
+            for (PagedColumn.Builder builder : builders) {
+                columns.add(builder.build());
+            }
+        } catch (IOException | RuntimeException e) {
+            pageFile.close();
+            throw e;
         }
-        return false;
     }
 
     /**
-     * Change the string values into integer format.
+     * Parse the lines in [start, end) of the file into one vector per column.
      */
-    public void formatValue() {
-        List<String> tmp;
-        for (int i = 0; i < getValues().size(); i++) {
-            List<Integer> rowData = new ArrayList<>();
-            tmp = getValues().get(i);
-            for (int j = 0; j < tmp.size(); j++) {
-                if (canParseInt(tmp.get(j))) {
-                    rowData.add(Integer.parseInt(tmp.get(j)));
-                } else {
-                    System.out.println("The data of " + i + "th row "
-                            + j + "th column can't be converted into integer type!");
+    private IntVector[] parseChunk(FileChannel channel, long start, long end) throws IOException {
+        int columnNumber = getTableHead().size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int length = buffer.limit();
+
+        // A line has at least two bytes per column, use it to size the vectors.
+        IntVector[] vectors = new IntVector[columnNumber];
+        for (int j = 0; j < columnNumber; j++) {
+            vectors[j] = new IntVector(length / (2 * columnNumber) + 1);
+        }
+
+        int column = 0;
+        // A long, so a value past the int range is caught instead of wrapping.
+        long value = 0;
+        boolean negative = false;
+        boolean hasDigit = false;
+        // Whether blanks followed the sign or the digits of the current
+        // value, it may not go on after them.
+        boolean ended = false;
+        boolean emptyLine = true;
+
+        for (int i = 0; i <= length; i++) {
+            // Treat the end of the chunk as a line feed, in case the file
+            // doesn't end with one.
+            byte b = i < length ? buffer.get(i) : (byte) '\n';
+
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                if (ended || value > -(long) Integer.MIN_VALUE) {
+                    throw notAnInteger(start + i);
+                }
+                hasDigit = true;
+                emptyLine = false;
+            } else if (b == '|' || b == '\n') {
+                if (b == '\n' && emptyLine) {
+                    continue;
+                }
+                if (!hasDigit) {
+                    throw new IllegalArgumentException("The file has an empty value near byte "
+                            + (start + i) + ", every value must be an integer.");
+                }
+                if (column >= columnNumber) {
+                    throw new IllegalArgumentException("The line near byte " + (start + i)
+                            + " has more values than the table head.");
+                }
+                if (!negative && value > Integer.MAX_VALUE) {
+                    throw notAnInteger(start + i);
+                }
+                vectors[column].add((int) (negative ? -value : value));
+                column++;
+                value = 0;
+                negative = false;
+                hasDigit = false;
+                ended = false;
+
+                if (b == '\n') {
+                    if (column != columnNumber) {
+                        throw new IllegalArgumentException("The line near byte " + (start + i)
+                                + " has fewer values than the table head.");
+                    }
+                    column = 0;
+                    emptyLine = true;
                 }
+            } else if (b == '-' && !hasDigit && !negative) {
+                negative = true;
+                emptyLine = false;
+            } else if (b == '\r' || b == ' ' || b == '\t') {
+                ended = hasDigit || negative;
+            } else {
+                throw notAnInteger(start + i);
+            }
+        }
+        return vectors;
+    }
+
+    private static IllegalArgumentException notAnInteger(long position) {
+        return new IllegalArgumentException("The data near byte " + position
+                + " can't be converted into integer type!");
+    }
+
+    /**
+     * Join the vectors of all the chunks in file order.
+     */
+    private void mergeChunks(List<IntVector[]> results) {
+        columns = new ArrayList<>();
+        if (results.size() == 1) {
+            for (IntVector vector : results.get(0)) {
+                columns.add(vector);
+            }
+            return;
+        }
 
+        int rowNumber = 0;
+        for (IntVector[] result : results) {
+            rowNumber += result[0].size();
+        }
+        for (int j = 0; j < getTableHead().size(); j++) {
+            IntVector column = new IntVector(rowNumber);
+            for (IntVector[] result : results) {
+                column.addAll(result[j].getData(), 0, result[j].size());
+            }
+            columns.add(column);
+        }
+    }
+
+    /**
+     * To judge whether a string can be parsed into integer.
+     * @param str the target string
+     * @return true if the string can be parsed into integer, otherwise false.
+     */
+    public static boolean canParseInt(String str) {
+        if (str == null || str.isEmpty() || str.equals("-")) {
+            return false;
+        }
+        for (int i = str.startsWith("-") ? 1 : 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
             }
-            getFormalTypeValues().add(rowData);
         }
+        return true;
     }
 }
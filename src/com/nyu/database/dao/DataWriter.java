@@ -1,67 +1,158 @@
 package com.nyu.database.dao;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import com.nyu.database.storage.Column;
+import com.nyu.database.util.MorselExecutor;
+
+/**
+ * Write int columns as delimited text. Rows are formatted into large byte
+ * buffers, chunk by chunk, and each buffer is written with a single call.
+ * Big tables are formatted on several threads and written in row order.
+ */
 public class DataWriter {
 
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final int ROWS_PER_CHUNK = 16384;
+
+    // Below this number of rows, starting threads costs more than it saves.
+    private static final int PARALLEL_THRESHOLD = 4 * ROWS_PER_CHUNK;
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    public static void writeFile(
+            List<String> tableHead, List<Column> columns, String fileName) {
+        writeFile(tableHead, columns, fileName, "|");
+    }
+
+    public static void writeFile(
+            List<String> tableHead, List<Column> columns, String fileName, String delimiter) {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHead(tableHead, delimiter, channel);
+            writeData(columns, delimiter, channel);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
-     * Write the name of each column of the table into a file.
-     * @param tableHead an ArrayList represents for the names of all columns
-     * @param bw the target BufferedWriter
-     * @param delimiter the character to seperate two column names
-     * @throws IOException if anything goes wrong when writing file
+     * Write the table's data to the standard output, the stream is flushed
+     * so that the data shows up before anything printed afterwards.
      */
-    private static void writeHead(
-            List<String> tableHead, BufferedWriter bw, String delimiter) throws IOException {
-        for (int i = 0; i < tableHead.size(); i++) {
-            bw.write(tableHead.get(i));
-            if (i < tableHead.size() - 1) {
-                bw.write(delimiter);
-            }
+    public static void writeStandardOutput(List<Column> columns, String delimiter) {
+        try {
+            writeData(columns, delimiter, Channels.newChannel(System.out));
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        bw.write("\n");
+        System.out.flush();
     }
 
     /**
-     * Write the table's data (int type) into a file.
-     * @param data an ArrayList that stores all the data
-     * @param bw the BufferedWriter of the target file
+     * Write the name of each column of the table.
+     * @param tableHead the names of all columns
+     * @param delimiter the string to separate two column names
+     * @param channel the target channel
+     * @throws IOException if anything goes wrong when writing file
+     */
+    public static void writeHead(
+            List<String> tableHead, String delimiter, WritableByteChannel channel)
+            throws IOException {
+        RowFormatter formatter = new RowFormatter(Collections.<Column>emptyList(), delimiter);
+        formatter.formatHead(tableHead);
+        writeFully(formatter.getBuffer(), channel);
+    }
+
+    /**
+     * Write the table's data (int type), one line per row.
+     * @param columns all the columns of the table, they must have the same size.
      * @param delimiter the delimiter that separates two columns
-     * @throws IOException if anything is wrong when reading files.
+     * @param channel the target channel
+     * @throws IOException if anything is wrong when writing.
      */
-    private static void writeData(
-            List<List<Integer>> data, BufferedWriter bw, String delimiter) throws IOException {
-        for (List<Integer> datum : data) {
-            for (int j = 0; j < datum.size(); j++) {
-                bw.write(Integer.toString(datum.get(j)));
-                if (j < datum.size() - 1) {
-                    bw.write(delimiter);
-                }
+    public static void writeData(
+            List<Column> columns, String delimiter, WritableByteChannel channel)
+            throws IOException {
+        int rowNumber = columns.isEmpty() ? 0 : columns.get(0).size();
+        int threadNumber = MorselExecutor.getParallelism();
+
+        if (rowNumber < PARALLEL_THRESHOLD || threadNumber == 1) {
+            // One formatter, the buffer is reused for every chunk.
+            RowFormatter formatter = new RowFormatter(columns, delimiter);
+            for (int from = 0; from < rowNumber; from += ROWS_PER_CHUNK) {
+                formatter.reset();
+                formatter.formatRows(from, Math.min(from + ROWS_PER_CHUNK, rowNumber));
+                writeFully(formatter.getBuffer(), channel);
             }
-            bw.write("\n");
+            return;
         }
-    }
 
-    public static void writeFile(
-            List<String> tableHead, List<List<Integer>> data, String fileName) {
-        String delimiter = "|";
-        try (BufferedWriter bw = new BufferedWriter(new java.io.FileWriter(fileName))) {
-            writeHead(tableHead, bw, delimiter);
-            writeData(data, bw, delimiter);
-        } catch (IOException e) {
-            e.printStackTrace();
+        // Format chunks in parallel on the pool of the operators, but never
+        // keep more than a few chunks in flight, and write them strictly in
+        // row order. Formatters are recycled once their chunk has been written.
+        ExecutorService executor = MorselExecutor.getPool();
+        ConcurrentLinkedQueue<RowFormatter> idle = new ConcurrentLinkedQueue<>();
+        Deque<Future<RowFormatter>> inFlight = new ArrayDeque<>();
+        int window = 2 * threadNumber;
+        try {
+            int from = 0;
+            while (from < rowNumber || !inFlight.isEmpty()) {
+                while (from < rowNumber && inFlight.size() < window) {
+                    final int start = from;
+                    final int end = Math.min(from + ROWS_PER_CHUNK, rowNumber);
+                    inFlight.add(executor.submit(() -> {
+                        RowFormatter formatter = idle.poll();
+                        if (formatter == null) {
+                            formatter = new RowFormatter(columns, delimiter);
+                        }
+                        formatter.reset();
+                        formatter.formatRows(start, end);
+                        return formatter;
+                    }));
+                    from = end;
+                }
+                RowFormatter formatter = inFlight.poll().get();
+                writeFully(formatter.getBuffer(), channel);
+                idle.add(formatter);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing data.", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            // The pool is shared, only drop the chunks of this write.
+            for (Future<RowFormatter> future : inFlight) {
+                future.cancel(true);
+            }
         }
     }
 
-    public static void writeFile(
-            List<String> tableHead, List<List<Integer>> data, String fileName, String delimiter) {
-        try (BufferedWriter bw = new BufferedWriter(new java.io.FileWriter(fileName))) {
-            writeHead(tableHead, bw, delimiter);
-            writeData(data, bw, delimiter);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static void writeFully(ByteBuffer buffer, WritableByteChannel channel)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
         }
     }
 }
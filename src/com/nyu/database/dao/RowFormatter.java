@@ -0,0 +1,149 @@
+package com.nyu.database.dao;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import com.nyu.database.storage.Column;
+
+/**
+ * Format rows of int columns as delimited text into a reusable byte buffer,
+ * without creating a String for every value.
+ */
+public class RowFormatter {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // Rows are read from the columns in batches of this size.
+    private static final int BATCH_SIZE = 1024;
+
+    private static final byte[] MIN_VALUE = Integer.toString(Integer.MIN_VALUE)
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private final Column[] columns;
+    private final byte[] delimiter;
+    private final int[][] batch;
+
+    private byte[] bytes;
+    private int length;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public RowFormatter(List<Column> columns, String delimiter) {
+        this.columns = columns.toArray(new Column[0]);
+        this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+        this.batch = new int[this.columns.length][BATCH_SIZE];
+        this.bytes = new byte[1 << 16];
+        this.length = 0;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    /**
+     * @return the formatted bytes, wrapped without copying.
+     */
+    public ByteBuffer getBuffer() {
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Forget the formatted bytes, the buffer itself is kept for reuse.
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    /**
+     * Append rows [from, to) to the buffer, one line per row.
+     */
+    public void formatRows(int from, int to) {
+        for (int start = from; start < to; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, to - start);
+            for (int j = 0; j < columns.length; j++) {
+                columns[j].read(start, n, batch[j], 0);
+            }
+            // Every value takes at most 11 bytes.
+            ensureCapacity(n * (columns.length * (11 + delimiter.length) + 1));
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < columns.length; j++) {
+                    if (j > 0) {
+                        putDelimiter();
+                    }
+                    putInt(batch[j][i]);
+                }
+                bytes[length++] = '\n';
+            }
+        }
+    }
+
+    /**
+     * Append a line with the column names.
+     */
+    public void formatHead(List<String> tableHead) {
+        for (int i = 0; i < tableHead.size(); i++) {
+            if (i > 0) {
+                ensureCapacity(delimiter.length);
+                putDelimiter();
+            }
+            byte[] name = tableHead.get(i).getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(name.length);
+            System.arraycopy(name, 0, bytes, length, name.length);
+            length += name.length;
+        }
+        ensureCapacity(1);
+        bytes[length++] = '\n';
+    }
+
+    private void putDelimiter() {
+        for (byte b : delimiter) {
+            bytes[length++] = b;
+        }
+    }
+
+    private void putInt(int value) {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                System.arraycopy(MIN_VALUE, 0, bytes, length, MIN_VALUE.length);
+                length += MIN_VALUE.length;
+                return;
+            }
+            bytes[length++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        int position = length + digits;
+        do {
+            bytes[--position] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        length += digits;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
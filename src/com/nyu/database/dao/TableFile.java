@@ -0,0 +1,308 @@
+package com.nyu.database.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nyu.database.storage.Column;
+import com.nyu.database.storage.MappedColumn;
+import com.nyu.database.storage.ZoneMap;
+
+/**
+ * The native binary format of a table. All numbers are little endian.
+ *
+ * <pre>
+ * header   magic "MDBT" | version | row number | column number | block size
+ * schema   for every column:
+ *              name length | name (UTF-8) | encoding | zone map offset (long)
+ *              | data offset (long)
+ * columns  for every column, starting on an 8 byte boundary:
+ *              one (min, max) pair per block | one int per row
+ * </pre>
+ *
+ * Loading a file maps every column section into memory, so the values are
+ * never parsed and the zone maps come for free.
+ */
+public class TableFile {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final byte[] MAGIC = {'M', 'D', 'B', 'T'};
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+
+    // The values are stored as they are, one int per row.
+    public static final int ENCODING_PLAIN = 0;
+
+    private List<String> tableHead;
+    private List<Column> columns;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public TableFile() {
+        tableHead = new ArrayList<>();
+        columns = new ArrayList<>();
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public List<String> getTableHead() {
+        return tableHead;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Save the columns into a file. The data is written to a temporary file
+     * first and then moved over the target, so a table that is currently
+     * mapped from the target file stays valid.
+     *
+     * @param fileName the path of the target file.
+     * @param tableHead the names of the columns.
+     * @param columns the columns, they must have the same size.
+     * @throws IOException if anything goes wrong when writing file.
+     */
+    public static void writeFile(String fileName, List<String> tableHead, List<Column> columns)
+            throws IOException {
+        int rowNumber = columns.isEmpty() ? 0 : columns.get(0).size();
+        int blockSize = ZoneMap.DEFAULT_BLOCK_SIZE;
+        int blockNumber = (rowNumber + blockSize - 1) / blockSize;
+
+        // Work out where every column section starts.
+        List<byte[]> names = new ArrayList<>();
+        long position = HEADER_SIZE;
+        for (String name : tableHead) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            names.add(bytes);
+            position += 4 + bytes.length + 4 + 8 + 8;
+        }
+        long[] zoneOffsets = new long[columns.size()];
+        long[] dataOffsets = new long[columns.size()];
+        for (int j = 0; j < columns.size(); j++) {
+            position = align(position);
+            zoneOffsets[j] = position;
+            position += 8L * blockNumber;
+            dataOffsets[j] = position;
+            position += 4L * rowNumber;
+        }
+
+        Path target = Paths.get(fileName).toAbsolutePath();
+        Path tmp = Paths.get(target + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.put(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(rowNumber);
+            buffer.putInt(columns.size());
+            buffer.putInt(blockSize);
+            for (int j = 0; j < columns.size(); j++) {
+                flushIfFull(buffer, channel, 4 + names.get(j).length + 20);
+                buffer.putInt(names.get(j).length);
+                buffer.put(names.get(j));
+                buffer.putInt(ENCODING_PLAIN);
+                buffer.putLong(zoneOffsets[j]);
+                buffer.putLong(dataOffsets[j]);
+            }
+
+            int[] values = new int[blockSize];
+            for (int j = 0; j < columns.size(); j++) {
+                Column column = columns.get(j);
+                padTo(buffer, channel, zoneOffsets[j]);
+
+                ZoneMap zoneMap = column.getZoneMap();
+                for (int block = 0; block < blockNumber; block++) {
+                    flushIfFull(buffer, channel, 8);
+                    buffer.putInt(zoneMap.getMin(block));
+                    buffer.putInt(zoneMap.getMax(block));
+                }
+                for (int from = 0; from < rowNumber; from += blockSize) {
+                    int length = Math.min(blockSize, rowNumber - from);
+                    column.read(from, length, values, 0);
+                    flushIfFull(buffer, channel, 4 * length);
+                    buffer.asIntBuffer().put(values, 0, length);
+                    buffer.position(buffer.position() + 4 * length);
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Map a file written by writeFile() into columns.
+     *
+     * @param fileName the path of the file.
+     * @throws IOException if the file can't be read or isn't a table file.
+     */
+    public void readFile(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, 0);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException(fileName + " is not a table file.");
+                }
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported table file version " + version + ".");
+            }
+            int rowNumber = header.getInt();
+            int columnNumber = header.getInt();
+            int blockSize = header.getInt();
+            // Every column takes at least its schema entry, 24 bytes.
+            long fileSize = channel.size();
+            if (rowNumber < 0 || columnNumber < 0 || blockSize <= 0
+                    || 24L * columnNumber > fileSize - HEADER_SIZE) {
+                throw new IOException("Corrupt header in " + fileName + ".");
+            }
+            int blockNumber = (int) (((long) rowNumber + blockSize - 1) / blockSize);
+
+            long position = HEADER_SIZE;
+            for (int j = 0; j < columnNumber; j++) {
+                ByteBuffer length = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, length, position);
+                int nameLength = length.getInt();
+                if (nameLength < 0 || position + 4 + nameLength + 20 > fileSize) {
+                    throw new IOException("Corrupt schema in " + fileName + ".");
+                }
+
+                ByteBuffer schema = ByteBuffer.allocate(nameLength + 20).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, schema, position + 4);
+                byte[] name = new byte[nameLength];
+                schema.get(name);
+                int encoding = schema.getInt();
+                long zoneOffset = schema.getLong();
+                long dataOffset = schema.getLong();
+                position += 4 + nameLength + 20;
+
+                if (encoding != ENCODING_PLAIN) {
+                    throw new IOException("Unsupported column encoding " + encoding + ".");
+                }
+                if (!fits(zoneOffset, 8L * blockNumber, fileSize)
+                        || !fits(dataOffset, 4L * rowNumber, fileSize)) {
+                    throw new IOException("Column " + j + " lies outside of " + fileName + ".");
+                }
+
+                IntBuffer zones = map(channel, zoneOffset, 8L * blockNumber);
+                int[] min = new int[blockNumber];
+                int[] max = new int[blockNumber];
+                for (int block = 0; block < blockNumber; block++) {
+                    min[block] = zones.get(2 * block);
+                    max[block] = zones.get(2 * block + 1);
+                }
+
+                Column column = new MappedColumn(mapSegments(channel, dataOffset, rowNumber));
+                column.setZoneMap(new ZoneMap(blockSize, min, max));
+                getTableHead().add(new String(name, StandardCharsets.UTF_8));
+                getColumns().add(column);
+            }
+        }
+    }
+
+    /**
+     * @return whether the length bytes from offset on are inside the file.
+     */
+    private static boolean fits(long offset, long length, long fileSize) {
+        return offset >= 0 && offset <= fileSize - length;
+    }
+
+    /**
+     * Map the values of a column in segments of MappedColumn.SEGMENT_ROWS
+     * rows, one mapping can't be larger than 2GB.
+     */
+    private static IntBuffer[] mapSegments(FileChannel channel, long offset, int rowNumber)
+            throws IOException {
+        int segmentNumber = Math.max(1,
+                (int) (((long) rowNumber + MappedColumn.SEGMENT_ROWS - 1) / MappedColumn.SEGMENT_ROWS));
+        IntBuffer[] segments = new IntBuffer[segmentNumber];
+        for (int s = 0; s < segmentNumber; s++) {
+            long first = (long) s * MappedColumn.SEGMENT_ROWS;
+            long rows = Math.min(MappedColumn.SEGMENT_ROWS, rowNumber - first);
+            segments[s] = map(channel, offset + 4 * first, 4 * rows);
+        }
+        return segments;
+    }
+
+    private static IntBuffer map(FileChannel channel, long offset, long length) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        return mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of the table file.");
+            }
+            position += n;
+        }
+        buffer.flip();
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    /**
+     * Write the buffer out if it can't take another needed bytes.
+     */
+    private static void flushIfFull(ByteBuffer buffer, FileChannel channel, int needed)
+            throws IOException {
+        if (buffer.remaining() < needed) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Write zeros until the file (including what is still in the buffer)
+     * reaches the given position.
+     */
+    private static void padTo(ByteBuffer buffer, FileChannel channel, long position)
+            throws IOException {
+        long written = channel.position() + buffer.position();
+        while (written < position) {
+            flushIfFull(buffer, channel, 1);
+            buffer.put((byte) 0);
+            written++;
+        }
+    }
+}
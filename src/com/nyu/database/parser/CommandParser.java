@@ -12,7 +12,10 @@ public class CommandParser {
     private static final String[] ALL_COMMANDS = {
             "inputfromfile", "outputtofile", "select", "project",
             "sum", "avg", "sumgroup", "avggroup", "join", "sort",
-            "movavg", "movsum", "btree", "hash", "concat", "showDB"
+            "movavg", "movsum", "btree", "hash", "concat", "showDB",
+            "savetable", "loadtable", "append", "movmin", "movmax", "movcount",
+            "agg", "topk", "semijoin", "antijoin", "distinct", "countdistinct",
+            "approxcountdistinct"
     };
 
     private static final String[] ALL_OPERATORS = {">", "<", "=", "!=", ">=", "<="};
@@ -22,6 +25,7 @@ public class CommandParser {
     private String commandName;
     private List<String> arguments;
     private OperationExpression operationExpression;
+    private ConditionExpression condition;
 
 
     //----------------
@@ -33,6 +37,7 @@ public class CommandParser {
         commandName = null;
         arguments = new ArrayList<>();
         operationExpression = null;
+        condition = null;
     }
 
 
@@ -76,6 +81,18 @@ public class CommandParser {
         this.operationExpression = operationExpression;
     }
 
+    /**
+     * @return the condition of a select command, or null if it couldn't
+     * be parsed.
+     */
+    public ConditionExpression getCondition() {
+        return condition;
+    }
+
+    public void setCondition(ConditionExpression condition) {
+        this.condition = condition;
+    }
+
     //----------------
     // Other Methods.
     //----------------
@@ -108,17 +125,30 @@ public class CommandParser {
     }
 
     /**
-     * Parse "select" command separately.
-     * @param strArguments a string that contains all the arguments and the CONDITION.
+     * Parse "select" command separately. The condition is parsed from the
+     * original text, the spaces in it separate the keywords (and, or, not,
+     * in, between) from the column names.
+     * @param rawArguments the original text between the parentheses.
      */
-    private void parseSelectCommand(String strArguments) {
-        String[] argumentsSplit = strArguments.split(",");
-        String targetTable = argumentsSplit[0];
-        String condition = argumentsSplit[1];
+    private void parseSelectCommand(String rawArguments) {
+        int comma = rawArguments.indexOf(',');
+        if (comma < 0) {
+            System.out.println("Error! Something is wrong with the condition, "
+                    + "please recheck carefully.");
+            return;
+        }
+        String targetTable = rawArguments.substring(0, comma).replaceAll("\\s", "").toLowerCase();
         getArguments().add(targetTable);
 
-        parseOperator(condition);
-        parseOperands(condition, getOperationExpression());
+        try {
+            setCondition(ConditionParser.parse(rawArguments.substring(comma + 1)));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (getCondition().getType() == ConditionExpression.Type.COMPARISON) {
+            setOperationExpression(getCondition().getComparison());
+        }
     }
 
     private void parseOperator(String condition) {
@@ -176,6 +206,8 @@ public class CommandParser {
      */
     public void parseCommand(String str) {
 
+        String rawCommand = str;
+
         // Delete all the spaces, and the commands entered are case agnostic.
         str = str.replaceAll("\\s", "").toLowerCase();
         String[] strSplit = str.split(":=");
@@ -204,15 +236,15 @@ public class CommandParser {
                 getCommandName().length() + 1, strParenthesis.length() - 1);
 
         // The format of the "select" and "join" commands is special,
-        // we need to deal with them separately.
+        // we need to deal with them separately. Semijoin and antijoin
+        // take the same arguments as join.
         if (isSelect()) {
-            setOperationExpression(new OperationExpression());
-            parseSelectCommand(strArguments);
-            getOperationExpression().formalType();
+            parseSelectCommand(rawCommand.substring(rawCommand.indexOf('(') + 1,
+                    rawCommand.lastIndexOf(')')));
             return;
         }
 
-        if (isJoin()) {
+        if (isJoin() || isSemiJoin() || isAntiJoin()) {
             setOperationExpression(new OperationExpression());
             parseJoinCommand(strArguments);
             return;
@@ -255,14 +287,42 @@ public class CommandParser {
         return getCommandName().equals("avggroup");
     }
 
+    public boolean isAgg() {
+        return getCommandName().equals("agg");
+    }
+
+    public boolean isDistinct() {
+        return getCommandName().equals("distinct");
+    }
+
+    public boolean isCountDistinct() {
+        return getCommandName().equals("countdistinct");
+    }
+
+    public boolean isApproxCountDistinct() {
+        return getCommandName().equals("approxcountdistinct");
+    }
+
     public boolean isJoin() {
         return getCommandName().equals("join");
     }
 
+    public boolean isSemiJoin() {
+        return getCommandName().equals("semijoin");
+    }
+
+    public boolean isAntiJoin() {
+        return getCommandName().equals("antijoin");
+    }
+
     public boolean isSort() {
         return getCommandName().equals("sort");
     }
 
+    public boolean isTopK() {
+        return getCommandName().equals("topk");
+    }
+
     public boolean isMovAvg() {
         return getCommandName().equals("movavg");
     }
@@ -271,6 +331,18 @@ public class CommandParser {
         return getCommandName().equals("movsum");
     }
 
+    public boolean isMovMin() {
+        return getCommandName().equals("movmin");
+    }
+
+    public boolean isMovMax() {
+        return getCommandName().equals("movmax");
+    }
+
+    public boolean isMovCount() {
+        return getCommandName().equals("movcount");
+    }
+
     public boolean isBtree() {
         return this.getCommandName().equals("btree");
     }
@@ -287,4 +359,16 @@ public class CommandParser {
         return getCommandName().equals("outputtofile");
     }
 
+    public boolean isSaveTable() {
+        return getCommandName().equals("savetable");
+    }
+
+    public boolean isLoadTable() {
+        return getCommandName().equals("loadtable");
+    }
+
+    public boolean isAppend() {
+        return getCommandName().equals("append");
+    }
+
 }
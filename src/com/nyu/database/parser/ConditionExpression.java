@@ -0,0 +1,97 @@
+package com.nyu.database.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A node of the condition of a select command. A condition is a tree:
+ * AND, OR and NOT combine other conditions, the leaves are a comparison
+ * (an OperationExpression) or an IN list. BETWEEN is parsed into the AND
+ * of two comparisons.
+ */
+public class ConditionExpression {
+
+    public enum Type {
+        AND, OR, NOT, COMPARISON, IN
+    }
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private Type type;
+
+    // The operands of AND and OR, the only operand of NOT.
+    private List<ConditionExpression> children;
+
+    // COMPARISON: the comparison.
+    private OperationExpression comparison;
+
+    // IN: the column and the values it is compared with.
+    private String column;
+    private int[] values;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    private ConditionExpression(Type type) {
+        this.type = type;
+        this.children = new ArrayList<>();
+    }
+
+    public static ConditionExpression and(List<ConditionExpression> children) {
+        ConditionExpression expression = new ConditionExpression(Type.AND);
+        expression.children.addAll(children);
+        return expression;
+    }
+
+    public static ConditionExpression or(List<ConditionExpression> children) {
+        ConditionExpression expression = new ConditionExpression(Type.OR);
+        expression.children.addAll(children);
+        return expression;
+    }
+
+    public static ConditionExpression not(ConditionExpression child) {
+        ConditionExpression expression = new ConditionExpression(Type.NOT);
+        expression.children.add(child);
+        return expression;
+    }
+
+    public static ConditionExpression comparison(OperationExpression comparison) {
+        ConditionExpression expression = new ConditionExpression(Type.COMPARISON);
+        expression.comparison = comparison;
+        return expression;
+    }
+
+    public static ConditionExpression in(String column, int[] values) {
+        ConditionExpression expression = new ConditionExpression(Type.IN);
+        expression.column = column;
+        expression.values = values;
+        return expression;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public Type getType() {
+        return type;
+    }
+
+    public List<ConditionExpression> getChildren() {
+        return children;
+    }
+
+    public OperationExpression getComparison() {
+        return comparison;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+}
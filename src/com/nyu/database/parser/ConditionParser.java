@@ -0,0 +1,204 @@
+package com.nyu.database.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parse the condition of a select command into a ConditionExpression.
+ *
+ * <pre>
+ * condition  := conjunction ("or" conjunction)*
+ * conjunction := negation ("and" negation)*
+ * negation   := "not" negation | primary
+ * primary    := "(" condition ")"
+ *             | operand COP operand
+ *             | column ["not"] "in" "(" integer ("," integer)* ")"
+ *             | column ["not"] "between" integer "and" integer
+ * </pre>
+ *
+ * The keywords are case agnostic. The input keeps its spaces, they are
+ * what separates a keyword from a column name.
+ */
+public class ConditionParser {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final String ERROR = "Error! Something is wrong with the condition, "
+            + "please recheck carefully.";
+
+    private final List<String> tokens;
+    private int position;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    private ConditionParser(List<String> tokens) {
+        this.tokens = tokens;
+        this.position = 0;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @param condition the text of the condition.
+     * @return the root of the condition tree.
+     * @throws IllegalArgumentException if the condition can't be parsed.
+     */
+    public static ConditionExpression parse(String condition) {
+        ConditionParser parser = new ConditionParser(tokenize(condition.toLowerCase()));
+        ConditionExpression expression = parser.parseOr();
+        if (parser.position != parser.tokens.size()) {
+            throw new IllegalArgumentException(ERROR);
+        }
+        return expression;
+    }
+
+    /**
+     * Cut the condition into parentheses, commas, comparison operators,
+     * integers and words.
+     */
+    private static List<String> tokenize(String condition) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < condition.length()) {
+            char c = condition.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')' || c == ',') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '<' || c == '>' || c == '!' || c == '=') {
+                int start = i++;
+                if (i < condition.length() && condition.charAt(i) == '=' && c != '=') {
+                    i++;
+                }
+                tokens.add(condition.substring(start, i));
+            } else if (c == '-' || Character.isLetterOrDigit(c) || c == '_' || c == '.') {
+                int start = i++;
+                while (i < condition.length() && (Character.isLetterOrDigit(condition.charAt(i))
+                        || condition.charAt(i) == '_' || condition.charAt(i) == '.')) {
+                    i++;
+                }
+                tokens.add(condition.substring(start, i));
+            } else {
+                throw new IllegalArgumentException(ERROR);
+            }
+        }
+        return tokens;
+    }
+
+    private ConditionExpression parseOr() {
+        List<ConditionExpression> children = new ArrayList<>();
+        children.add(parseAnd());
+        while (accept("or")) {
+            children.add(parseAnd());
+        }
+        return children.size() == 1 ? children.get(0) : ConditionExpression.or(children);
+    }
+
+    private ConditionExpression parseAnd() {
+        List<ConditionExpression> children = new ArrayList<>();
+        children.add(parseNot());
+        while (accept("and")) {
+            children.add(parseNot());
+        }
+        return children.size() == 1 ? children.get(0) : ConditionExpression.and(children);
+    }
+
+    private ConditionExpression parseNot() {
+        if (accept("not")) {
+            return ConditionExpression.not(parseNot());
+        }
+        return parsePrimary();
+    }
+
+    private ConditionExpression parsePrimary() {
+        if (accept("(")) {
+            ConditionExpression expression = parseOr();
+            expect(")");
+            return expression;
+        }
+
+        String operand1 = next();
+        boolean negated = accept("not");
+        if (accept("in")) {
+            expect("(");
+            List<Integer> values = new ArrayList<>();
+            do {
+                values.add(parseInteger(next()));
+            } while (accept(","));
+            expect(")");
+            int[] array = new int[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            ConditionExpression in = ConditionExpression.in(operand1, array);
+            return negated ? ConditionExpression.not(in) : in;
+        }
+        if (accept("between")) {
+            String low = String.valueOf(parseInteger(next()));
+            expect("and");
+            String high = String.valueOf(parseInteger(next()));
+            List<ConditionExpression> bounds = new ArrayList<>();
+            bounds.add(comparison(operand1, ">=", low));
+            bounds.add(comparison(operand1, "<=", high));
+            ConditionExpression between = ConditionExpression.and(bounds);
+            return negated ? ConditionExpression.not(between) : between;
+        }
+        if (negated) {
+            throw new IllegalArgumentException(ERROR);
+        }
+
+        String operator = next();
+        for (String validOperator : CommandParser.getAllOperators()) {
+            if (validOperator.equals(operator)) {
+                return comparison(operand1, operator, next());
+            }
+        }
+        throw new IllegalArgumentException(ERROR);
+    }
+
+    private static ConditionExpression comparison(String operand1, String operator,
+                                                  String operand2) {
+        OperationExpression comparison = new OperationExpression();
+        comparison.setOperand1(operand1);
+        comparison.setOperator(operator);
+        comparison.setOperand2(operand2);
+        comparison.formalType();
+        return ConditionExpression.comparison(comparison);
+    }
+
+    private static int parseInteger(String token) {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(ERROR);
+        }
+    }
+
+    private String next() {
+        if (position >= tokens.size()) {
+            throw new IllegalArgumentException(ERROR);
+        }
+        return tokens.get(position++);
+    }
+
+    private boolean accept(String token) {
+        if (position < tokens.size() && tokens.get(position).equals(token)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw new IllegalArgumentException(ERROR);
+        }
+    }
+}
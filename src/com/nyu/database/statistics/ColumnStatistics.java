@@ -0,0 +1,189 @@
+package com.nyu.database.statistics;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.nyu.database.storage.Column;
+import com.nyu.database.storage.Comparison;
+
+/**
+ * What we know about the values of a column without scanning it: the
+ * number of rows, the min and max, an estimate of the number of distinct
+ * values and an equi-depth histogram.
+ */
+public class ColumnStatistics {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // The histogram is built from a uniform sample of at most this size.
+    private static final int SAMPLE_SIZE = 4096;
+    private static final int BATCH_SIZE = 4096;
+
+    private final long rowNumber;
+    private final int min;
+    private final int max;
+    private final HyperLogLog distinct;
+    private final Histogram histogram;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public ColumnStatistics(long rowNumber, int min, int max,
+                            HyperLogLog distinct, Histogram histogram) {
+        this.rowNumber = rowNumber;
+        this.min = min;
+        this.max = max;
+        this.distinct = distinct;
+        this.histogram = histogram;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * @return the smallest value, meaningless if there is no row.
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest value, meaningless if there is no row.
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return the sketch of the distinct values, it must not be modified.
+     */
+    public HyperLogLog getDistinctSketch() {
+        return distinct;
+    }
+
+    /**
+     * @return the estimated number of distinct values, never more than
+     * the number of rows or than the size of [min, max].
+     */
+    public long getDistinctNumber() {
+        long estimate = Math.max(distinct.estimate(), rowNumber > 0 ? 1 : 0);
+        long range = rowNumber > 0 ? (long) max - min + 1 : 0;
+        return Math.min(estimate, Math.min(rowNumber, range));
+    }
+
+    /**
+     * @return the histogram, or null if there is no row.
+     */
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Scan a column once and collect its statistics.
+     */
+    public static ColumnStatistics collect(Column column) {
+        int size = column.size();
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        HyperLogLog distinct = new HyperLogLog();
+
+        // Reservoir sampling, seeded so that the statistics are repeatable.
+        int[] sample = new int[Math.min(size, SAMPLE_SIZE)];
+        Random random = new Random(size);
+
+        int[] batch = new int[Math.min(Math.max(size, 1), BATCH_SIZE)];
+        for (int start = 0; start < size; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, size - start);
+            column.read(start, n, batch, 0);
+            for (int i = 0; i < n; i++) {
+                int value = batch[i];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                distinct.add(value);
+
+                int row = start + i;
+                if (row < sample.length) {
+                    sample[row] = value;
+                } else {
+                    int slot = random.nextInt(row + 1);
+                    if (slot < sample.length) {
+                        sample[slot] = value;
+                    }
+                }
+            }
+        }
+
+        Histogram histogram = null;
+        if (size > 0) {
+            Arrays.sort(sample);
+            histogram = Histogram.build(sample, Histogram.DEFAULT_BUCKET_NUMBER);
+        }
+        return new ColumnStatistics(size, min, max, distinct, histogram);
+    }
+
+    /**
+     * Combine the statistics of two disjoint sets of rows, e.g. the two
+     * inputs of a concatenation, without looking at the rows again.
+     */
+    public static ColumnStatistics merge(ColumnStatistics a, ColumnStatistics b) {
+        if (a.rowNumber == 0) {
+            return b;
+        }
+        if (b.rowNumber == 0) {
+            return a;
+        }
+        HyperLogLog distinct = a.distinct.copy();
+        distinct.merge(b.distinct);
+        return new ColumnStatistics(a.rowNumber + b.rowNumber,
+                Math.min(a.min, b.min), Math.max(a.max, b.max), distinct,
+                Histogram.merge(a.histogram, a.rowNumber, b.histogram, b.rowNumber));
+    }
+
+    /**
+     * Estimate the fraction of the rows that satisfy "value comparison constant".
+     *
+     * @return a number between 0 and 1.
+     */
+    public double estimateSelectivity(Comparison comparison, int constant) {
+        if (rowNumber == 0) {
+            return 0;
+        }
+        double equal = constant < min || constant > max ? 0 : 1.0 / getDistinctNumber();
+        switch (comparison) {
+            case LESS:
+                return histogram.lessOrEqual((long) constant - 1);
+            case LESS_EQUAL:
+                return histogram.lessOrEqual(constant);
+            case GREATER:
+                return 1 - histogram.lessOrEqual(constant);
+            case GREATER_EQUAL:
+                return 1 - histogram.lessOrEqual((long) constant - 1);
+            case EQUAL:
+                return equal;
+            default:
+                return 1 - equal;
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (rowNumber == 0) {
+            return "rows=0";
+        }
+        return "rows=" + rowNumber + ", min=" + min + ", max=" + max
+                + ", distinct~" + getDistinctNumber()
+                + ", histogram=" + histogram.getBucketNumber() + " buckets";
+    }
+}
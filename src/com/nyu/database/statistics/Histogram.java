@@ -0,0 +1,131 @@
+package com.nyu.database.statistics;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * An equi-depth histogram: every bucket holds about the same number of
+ * rows, so buckets are narrow where the values are dense.
+ *
+ * Bucket i covers the values in (bounds[i], bounds[i + 1]], the first one
+ * also includes bounds[0], which is the minimum.
+ */
+public class Histogram {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    public static final int DEFAULT_BUCKET_NUMBER = 32;
+
+    private final int[] bounds;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    private Histogram(int[] bounds) {
+        this.bounds = bounds;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int getBucketNumber() {
+        return bounds.length - 1;
+    }
+
+    /**
+     * @return the bucket bounds, see the class comment.
+     */
+    public int[] getBounds() {
+        return bounds.clone();
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Build a histogram from a sample of the values.
+     *
+     * @param sortedSample a non-empty sample, in ascending order.
+     * @param bucketNumber the number of buckets.
+     */
+    public static Histogram build(int[] sortedSample, int bucketNumber) {
+        int[] bounds = new int[bucketNumber + 1];
+        bounds[0] = sortedSample[0];
+        for (int i = 1; i <= bucketNumber; i++) {
+            int index = (int) ((long) i * sortedSample.length / bucketNumber) - 1;
+            bounds[i] = sortedSample[Math.max(index, 0)];
+        }
+        return new Histogram(bounds);
+    }
+
+    /**
+     * Combine the histograms of two disjoint sets of rows.
+     *
+     * @param a the histogram of the first set.
+     * @param rowsA the number of rows of the first set.
+     * @param b the histogram of the second set.
+     * @param rowsB the number of rows of the second set.
+     */
+    public static Histogram merge(Histogram a, long rowsA, Histogram b, long rowsB) {
+        double total = rowsA + rowsB;
+        int bucketNumber = Math.max(a.getBucketNumber(), b.getBucketNumber());
+
+        // The new bounds are picked among the old ones, where the combined
+        // distribution reaches each quantile.
+        TreeSet<Integer> candidates = new TreeSet<>();
+        for (int bound : a.bounds) {
+            candidates.add(bound);
+        }
+        for (int bound : b.bounds) {
+            candidates.add(bound);
+        }
+
+        int[] bounds = new int[bucketNumber + 1];
+        bounds[0] = candidates.first();
+        bounds[bucketNumber] = candidates.last();
+        int i = 1;
+        for (int candidate : candidates) {
+            double cdf = (rowsA * a.lessOrEqual(candidate) + rowsB * b.lessOrEqual(candidate)) / total;
+            while (i < bucketNumber && cdf >= (double) i / bucketNumber) {
+                bounds[i++] = candidate;
+            }
+        }
+        while (i < bucketNumber) {
+            bounds[i++] = bounds[bucketNumber];
+        }
+        return new Histogram(bounds);
+    }
+
+    /**
+     * @return the estimated fraction of the rows whose value is at most x.
+     */
+    public double lessOrEqual(long x) {
+        int bucketNumber = getBucketNumber();
+        if (x < bounds[0]) {
+            return 0;
+        }
+        if (x >= bounds[bucketNumber]) {
+            return 1;
+        }
+        // The buckets whose upper bound is at most x are fully counted, and
+        // the values are assumed to be spread evenly in the next bucket.
+        int full = 0;
+        while (full < bucketNumber && bounds[full + 1] <= x) {
+            full++;
+        }
+        double lower = bounds[full];
+        double upper = bounds[full + 1];
+        double partial = upper > lower ? (x - lower + 1) / (upper - lower + 1) : 0;
+        return (full + partial) / bucketNumber;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(bounds);
+    }
+}
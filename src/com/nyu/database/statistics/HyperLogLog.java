@@ -0,0 +1,116 @@
+package com.nyu.database.statistics;
+
+/**
+ * A HyperLogLog sketch that estimates the number of distinct ints with a
+ * few kilobytes of memory. Sketches built on different parts of the data
+ * can be merged, the result is the sketch of the union.
+ */
+public class HyperLogLog {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // 2^12 registers give a standard error of about 1.6%.
+    private static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision log2 of the number of registers, between 4 and 16.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("The precision must be between 4 and 16.");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    public void add(int value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - precision));
+        // The guard bit caps the rank if all the remaining bits are zero.
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Add every value of another sketch to this one.
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Only sketches of the same precision can be merged.");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        System.arraycopy(registers, 0, copy.registers, 0, registers.length);
+        return copy;
+    }
+
+    /**
+     * @return the estimated number of distinct values added so far.
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Small cardinalities are better estimated by linear counting.
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, every input bit affects every output bit.
+     */
+    private static long hash(int value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,219 @@
+package com.nyu.database.storage;
+
+import java.util.Set;
+
+import com.nyu.database.statistics.ColumnStatistics;
+
+/**
+ * A column that grows at the end: an immutable base column followed by
+ * the rows appended since.
+ *
+ * Appending never changes an existing column object. The appended rows go
+ * into a tail array that is shared by the successive versions of the
+ * column, each version only sees the first tailSize values of it. As long
+ * as the latest version is the one appended to, the rows are written in
+ * place and the array grows by doubling, so an append costs O(batch)
+ * amortized.
+ */
+public class AppendableColumn extends Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final int MIN_TAIL_CAPACITY = 1024;
+
+    private final Column base;
+    private final Tail tail;
+    private final int tailSize;
+
+    /**
+     * The array that holds the appended rows, used records how much of it
+     * has been written by any version of the column.
+     */
+    private static class Tail {
+        private final int[] data;
+        private int used;
+
+        private Tail(int capacity) {
+            this.data = new int[capacity];
+            this.used = 0;
+        }
+    }
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    private AppendableColumn(Column base, Tail tail, int tailSize) {
+        this.base = base;
+        this.tail = tail;
+        this.tailSize = tailSize;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    @Override
+    public int size() {
+        return base.size() + tailSize;
+    }
+
+    @Override
+    public int get(int row) {
+        int baseSize = base.size();
+        if (row < baseSize) {
+            return base.get(row);
+        }
+        if (row >= baseSize + tailSize) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size());
+        }
+        return tail.data[row - baseSize];
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Build the column that holds the rows of column followed by the rows
+     * of batch. Neither input changes. The statistics and the zone map of
+     * the new column are derived from the ones already known for column,
+     * so only the batch is scanned.
+     *
+     * @param column the current column.
+     * @param batch the rows to append.
+     * @return the grown column.
+     */
+    public static AppendableColumn append(Column column, Column batch) {
+        AppendableColumn current = column instanceof AppendableColumn
+                ? (AppendableColumn) column
+                : new AppendableColumn(column, new Tail(0), 0);
+        AppendableColumn result = current.appendTail(batch);
+
+        ColumnStatistics statistics = column.getKnownStatistics();
+        if (statistics != null) {
+            result.setStatistics(ColumnStatistics.merge(statistics, batch.getStatistics()));
+        }
+        ZoneMap zoneMap = column.getKnownZoneMap();
+        if (zoneMap != null) {
+            result.setZoneMap(zoneMap.extend(result));
+        }
+        return result;
+    }
+
+    private AppendableColumn appendTail(Column batch) {
+        int n = batch.size();
+        Tail target = tail;
+        // Copy the tail if another version already wrote past our end, or
+        // if there is no room left.
+        synchronized (tail) {
+            if (tail.used != tailSize || tailSize + n > tail.data.length) {
+                target = new Tail(Math.max(tailSize + n,
+                        Math.max(2 * tailSize, MIN_TAIL_CAPACITY)));
+                System.arraycopy(tail.data, 0, target.data, 0, tailSize);
+            }
+            target.used = tailSize + n;
+        }
+        batch.read(0, n, target.data, tailSize);
+        return new AppendableColumn(base, target, tailSize + n);
+    }
+
+    @Override
+    public void read(int from, int length, int[] dst, int offset) {
+        checkRange(from, length);
+        int baseSize = base.size();
+        int baseLength = Math.max(0, Math.min(length, baseSize - from));
+        if (baseLength > 0) {
+            base.read(from, baseLength, dst, offset);
+        }
+        if (baseLength < length) {
+            System.arraycopy(tail.data, from + baseLength - baseSize,
+                    dst, offset + baseLength, length - baseLength);
+        }
+    }
+
+    /**
+     * The rows of the base are read by the base in one go.
+     */
+    @Override
+    public void readRows(int[] rows, int offset, int length, int[] dst) {
+        int baseSize = base.size();
+        int[] baseRows = new int[length];
+        int[] positions = new int[length];
+        int baseLength = 0;
+        for (int i = 0; i < length; i++) {
+            int row = rows[offset + i];
+            if (row < 0 || row >= size()) {
+                throw new IndexOutOfBoundsException("Row " + row + " out of " + size());
+            }
+            if (row < baseSize) {
+                baseRows[baseLength] = row;
+                positions[baseLength++] = i;
+            } else {
+                dst[i] = tail.data[row - baseSize];
+            }
+        }
+        if (baseLength > 0) {
+            int[] values = new int[baseLength];
+            base.readRows(baseRows, 0, baseLength, values);
+            for (int k = 0; k < baseLength; k++) {
+                dst[positions[k]] = values[k];
+            }
+        }
+    }
+
+    @Override
+    public long sum(int from, int length) {
+        checkRange(from, length);
+        int baseSize = base.size();
+        int baseLength = Math.max(0, Math.min(length, baseSize - from));
+        long sum = baseLength > 0 ? base.sum(from, baseLength) : 0;
+        int tailFrom = from + baseLength - baseSize;
+        for (int i = tailFrom; i < tailFrom + length - baseLength; i++) {
+            sum += tail.data[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Rows past tailSize may have been written to the shared tail by a later
+     * version of the column, they must not be read through this one.
+     */
+    private void checkRange(int from, int length) {
+        if (from < 0 || length < 0 || from + length > size()) {
+            throw new IndexOutOfBoundsException("Row " + (from + length - 1) + " out of " + size());
+        }
+    }
+
+    /**
+     * The base rows are selected by the base column, which may work on its
+     * encoded form.
+     */
+    @Override
+    public void select(Comparison comparison, int constant, int from, int length, IntVector rows) {
+        int baseSize = base.size();
+        int baseLength = Math.max(0, Math.min(length, baseSize - from));
+        if (baseLength > 0) {
+            base.select(comparison, constant, from, baseLength, rows);
+        }
+        if (baseLength < length) {
+            super.select(comparison, constant, from + baseLength, length - baseLength, rows);
+        }
+    }
+
+    /**
+     * The statistics of the base are combined with the ones of the tail.
+     */
+    @Override
+    protected ColumnStatistics computeStatistics() {
+        return ColumnStatistics.merge(base.getStatistics(),
+                ColumnStatistics.collect(new IntVector(tail.data, tailSize)));
+    }
+
+    @Override
+    public void addPageFiles(Set<PageFile> files) {
+        base.addPageFiles(files);
+    }
+}
@@ -0,0 +1,116 @@
+package com.nyu.database.storage;
+
+/**
+ * Frame-of-reference encoding: every value is stored as its distance to
+ * the column minimum, with just enough bits for the largest distance.
+ */
+public class BitPackedColumn extends Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private final int size;
+    private final int base;
+    private final int width;
+    private final long[] words;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param values the values to encode, the first size ones are used.
+     * @param size the number of values.
+     * @param min the smallest of the values.
+     * @param max the largest of the values.
+     */
+    public BitPackedColumn(int[] values, int size, int min, int max) {
+        this.size = size;
+        this.base = min;
+        this.width = BitPacker.bitsFor((long) max - min);
+        int[] codes = new int[size];
+        for (int i = 0; i < size; i++) {
+            codes[i] = values[i] - min;
+        }
+        this.words = BitPacker.pack(codes, size, width);
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int row) {
+        if (row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+        return base + BitPacker.get(words, width, row);
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    @Override
+    public void read(int from, int length, int[] dst, int offset) {
+        BitPacker.unpack(words, width, from, length, dst, offset);
+        for (int i = offset; i < offset + length; i++) {
+            dst[i] += base;
+        }
+    }
+
+    @Override
+    public long sum(int from, int length) {
+        long sum = (long) base * length;
+        int[] codes = new int[Math.min(length, BATCH_SIZE)];
+        for (int start = from; start < from + length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, from + length - start);
+            BitPacker.unpack(words, width, start, n, codes, 0);
+            for (int i = 0; i < n; i++) {
+                sum += codes[i] & 0xFFFFFFFFL;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Compare the stored codes with (constant - base) instead of decoding
+     * every value. A constant outside of the code range matches all or none
+     * of the rows without looking at them.
+     */
+    @Override
+    public void select(Comparison comparison, int constant, int from, int length, IntVector rows) {
+        if (width >= 31) {
+            super.select(comparison, constant, from, length, rows);
+            return;
+        }
+        long target = (long) constant - base;
+        long maxCode = (1L << width) - 1;
+        if (target < 0 || target > maxCode) {
+            // Every code is on the same side of the constant.
+            if (comparison.test(0, target < 0 ? -1 : 1)) {
+                addRange(rows, from, length);
+            }
+            return;
+        }
+
+        SelectKernel kernel = SelectKernel.of(comparison, (int) target);
+        int[] codes = new int[Math.min(length, BATCH_SIZE)];
+        int[] selected = new int[codes.length];
+        for (int start = from; start < from + length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, from + length - start);
+            BitPacker.unpack(words, width, start, n, codes, 0);
+            rows.addAll(selected, 0, kernel.filter(codes, n, start, selected));
+        }
+    }
+}
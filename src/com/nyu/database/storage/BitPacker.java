@@ -0,0 +1,84 @@
+package com.nyu.database.storage;
+
+import java.util.Arrays;
+
+/**
+ * Helpers to store small unsigned codes with a fixed number of bits each,
+ * packed back to back in an array of longs.
+ */
+final class BitPacker {
+
+    private BitPacker() {
+    }
+
+    /**
+     * @return the number of bits needed to store values in [0, range].
+     */
+    static int bitsFor(long range) {
+        return 64 - Long.numberOfLeadingZeros(range);
+    }
+
+    /**
+     * @return the number of longs needed for n codes of the given width.
+     */
+    static int wordsFor(int n, int width) {
+        return (int) (((long) n * width + 63) >>> 6);
+    }
+
+    /**
+     * Pack the first n codes, each code is read as an unsigned int.
+     */
+    static long[] pack(int[] codes, int n, int width) {
+        long[] words = new long[wordsFor(n, width)];
+        if (width == 0) {
+            return words;
+        }
+        long mask = (1L << width) - 1;
+        for (int i = 0; i < n; i++) {
+            long code = codes[i] & mask;
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            words[word] |= code << shift;
+            if (shift + width > 64) {
+                words[word + 1] |= code >>> (64 - shift);
+            }
+        }
+        return words;
+    }
+
+    static int get(long[] words, int width, int index) {
+        if (width == 0) {
+            return 0;
+        }
+        long bit = (long) index * width;
+        int word = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        long value = words[word] >>> shift;
+        if (shift + width > 64) {
+            value |= words[word + 1] << (64 - shift);
+        }
+        return (int) (value & ((1L << width) - 1));
+    }
+
+    /**
+     * Unpack codes [from, from + length) into dst.
+     */
+    static void unpack(long[] words, int width, int from, int length, int[] dst, int offset) {
+        if (width == 0) {
+            Arrays.fill(dst, offset, offset + length, 0);
+            return;
+        }
+        long mask = (1L << width) - 1;
+        long bit = (long) from * width;
+        for (int i = 0; i < length; i++, bit += width) {
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            long value = words[word] >>> shift;
+            if (shift + width > 64) {
+                value |= words[word + 1] << (64 - shift);
+            }
+            dst[offset + i] = (int) (value & mask);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.nyu.database.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A fixed number of in-memory frames that cache pages of page files.
+ *
+ * A page must be pinned while it is used and unpinned afterwards, pinned
+ * pages are never evicted. When a page is needed and no frame is free, the
+ * clock algorithm picks an unpinned frame that hasn't been used recently.
+ *
+ * The lock of the pool only guards the page table and the frames' state.
+ * A page is read from disk after its frame is reserved and the lock is
+ * released, so a page miss doesn't hold up the threads that hit other
+ * pages. Threads that need the page while it is loading wait for it.
+ */
+public class BufferPool {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // 1024 frames of 64KB, i.e. 64MB, unless configured otherwise.
+    private static final int DEFAULT_FRAME_NUMBER =
+            Integer.getInteger("minidb.bufferpool.frames", 1024);
+
+    private static BufferPool defaultPool;
+
+    private final int[][] frames;
+    private final long[] frameKeys;
+    private final int[] pinCounts;
+    private final boolean[] referenced;
+    // Whether the page of the frame is still being read from disk.
+    private final boolean[] loading;
+    private final Map<Long, Integer> pageTable;
+    private int clockHand;
+
+    // Every thread reads pages through a buffer of its own.
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+            ThreadLocal.withInitial(PageFile::allocatePageBuffer);
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public BufferPool(int frameNumber) {
+        this.frames = new int[frameNumber][];
+        this.frameKeys = new long[frameNumber];
+        this.pinCounts = new int[frameNumber];
+        this.referenced = new boolean[frameNumber];
+        this.loading = new boolean[frameNumber];
+        this.pageTable = new HashMap<>();
+        this.clockHand = 0;
+        Arrays.fill(frameKeys, -1);
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    /**
+     * @return the pool shared by all the paged columns of the process.
+     */
+    public static synchronized BufferPool getDefault() {
+        if (defaultPool == null) {
+            defaultPool = new BufferPool(DEFAULT_FRAME_NUMBER);
+        }
+        return defaultPool;
+    }
+
+    public int getFrameNumber() {
+        return frames.length;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Make sure a page is in memory and keep it there until unpin().
+     *
+     * @return the values of the page, they must not be modified.
+     * @throws IllegalStateException if all the frames are pinned.
+     */
+    public int[] pin(PageFile file, int pageId) {
+        long key = key(file, pageId);
+        int frame;
+        synchronized (this) {
+            while (true) {
+                Integer cached = pageTable.get(key);
+                if (cached == null) {
+                    break;
+                }
+                frame = cached;
+                pinCounts[frame]++;
+                referenced[frame] = true;
+                try {
+                    while (loading[frame]) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    pinCounts[frame]--;
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a page.", e);
+                }
+                if (frameKeys[frame] == key) {
+                    return frames[frame];
+                }
+                // The read failed, try again.
+                pinCounts[frame]--;
+            }
+
+            // Reserve a frame, pinned so that nobody evicts it while it loads.
+            frame = evict();
+            if (frames[frame] == null) {
+                frames[frame] = new int[PageFile.PAGE_INTS];
+            }
+            frameKeys[frame] = key;
+            pageTable.put(key, frame);
+            pinCounts[frame] = 1;
+            referenced[frame] = true;
+            loading[frame] = true;
+        }
+
+        boolean loaded = false;
+        try {
+            file.readPage(pageId, frames[frame], READ_BUFFER.get());
+            loaded = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            synchronized (this) {
+                loading[frame] = false;
+                if (!loaded) {
+                    pageTable.remove(key);
+                    frameKeys[frame] = -1;
+                    pinCounts[frame]--;
+                }
+                notifyAll();
+            }
+        }
+        return frames[frame];
+    }
+
+    public synchronized void unpin(PageFile file, int pageId) {
+        Integer frame = pageTable.get(key(file, pageId));
+        if (frame == null || pinCounts[frame] == 0) {
+            throw new IllegalStateException("Page " + pageId + " is not pinned.");
+        }
+        pinCounts[frame]--;
+    }
+
+    /**
+     * Forget the pages of a page file that is closed, their frames become
+     * free. A page that is still pinned keeps its frame until it is
+     * evicted, no page of a closed file is ever asked for again.
+     */
+    public synchronized void discard(PageFile file) {
+        for (int frame = 0; frame < frames.length; frame++) {
+            if (frameKeys[frame] != -1 && (int) (frameKeys[frame] >>> 32) == file.getId()
+                    && pinCounts[frame] == 0) {
+                pageTable.remove(frameKeys[frame]);
+                frameKeys[frame] = -1;
+                referenced[frame] = false;
+            }
+        }
+    }
+
+    /**
+     * Find a frame for a new page with the clock algorithm. The page that
+     * lived in the frame is forgotten, pages never need to be written back.
+     */
+    private int evict() {
+        // Two turns: the first one may only clear reference bits.
+        for (int i = 0; i < 2 * frames.length; i++) {
+            int frame = clockHand;
+            clockHand = (clockHand + 1) % frames.length;
+            if (pinCounts[frame] > 0) {
+                continue;
+            }
+            if (referenced[frame]) {
+                referenced[frame] = false;
+                continue;
+            }
+            if (frameKeys[frame] != -1) {
+                pageTable.remove(frameKeys[frame]);
+                frameKeys[frame] = -1;
+            }
+            return frame;
+        }
+        throw new IllegalStateException("Error! All the pages of the buffer pool are pinned.");
+    }
+
+    private static long key(PageFile file, int pageId) {
+        return ((long) file.getId() << 32) | (pageId & 0xFFFFFFFFL);
+    }
+}
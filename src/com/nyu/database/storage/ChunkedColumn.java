@@ -0,0 +1,225 @@
+package com.nyu.database.storage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import com.nyu.database.statistics.ColumnStatistics;
+
+/**
+ * A derived column made of the rows of several columns, the chunks, one
+ * after the other. Nothing is copied.
+ *
+ * The chunks are kept in one flat array with the first row of every chunk,
+ * so concatenating a chunked column again adds its chunks to the list
+ * instead of stacking one more level: a table grown by a concat a day has
+ * one chunk a day, and a row is found with a binary search over them.
+ * Scans go chunk by chunk, so every chunk keeps its own encoding, zone map
+ * and kernels.
+ */
+public class ChunkedColumn extends Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private final Column[] chunks;
+
+    // starts[c] is the first row of chunk c, starts[chunks.length] the size.
+    private final int[] starts;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    private ChunkedColumn(List<Column> chunks) {
+        this.chunks = chunks.toArray(new Column[0]);
+        this.starts = new int[this.chunks.length + 1];
+        for (int c = 0; c < this.chunks.length; c++) {
+            starts[c + 1] = starts[c] + this.chunks[c].size();
+        }
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    @Override
+    public int size() {
+        return starts[chunks.length];
+    }
+
+    @Override
+    public int get(int row) {
+        if (row < 0 || row >= size()) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size());
+        }
+        int c = chunkOf(row);
+        return chunks[c].get(row - starts[c]);
+    }
+
+    public int getChunkNumber() {
+        return chunks.length;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Build the column that holds the rows of first followed by the rows of
+     * second. The chunks of chunked inputs are taken over as they are, so
+     * the cost is the number of chunks, not the number of rows. The
+     * statistics are combined right away when both of them are known.
+     */
+    public static Column concat(Column first, Column second) {
+        List<Column> chunks = new ArrayList<>();
+        addChunks(chunks, first);
+        addChunks(chunks, second);
+        ChunkedColumn result = new ChunkedColumn(chunks);
+
+        ColumnStatistics firstStatistics = first.getKnownStatistics();
+        ColumnStatistics secondStatistics = second.getKnownStatistics();
+        if (firstStatistics != null && secondStatistics != null) {
+            result.setStatistics(ColumnStatistics.merge(firstStatistics, secondStatistics));
+        }
+        return result;
+    }
+
+    private static void addChunks(List<Column> chunks, Column column) {
+        if (column instanceof ChunkedColumn) {
+            chunks.addAll(Arrays.asList(((ChunkedColumn) column).chunks));
+        } else if (column.size() > 0) {
+            chunks.add(column);
+        }
+    }
+
+    /**
+     * @return the chunk that holds the row.
+     */
+    private int chunkOf(int row) {
+        // The last chunk whose first row is not after row. Empty chunks are
+        // never added, so the starts are strictly ascending.
+        int c = Arrays.binarySearch(starts, 0, chunks.length, row);
+        return c >= 0 ? c : -c - 2;
+    }
+
+    @Override
+    public void read(int from, int length, int[] dst, int offset) {
+        int to = from + length;
+        for (int c = chunkOf(from); from < to; c++) {
+            int n = Math.min(to, starts[c + 1]) - from;
+            chunks[c].read(from - starts[c], n, dst, offset);
+            from += n;
+            offset += n;
+        }
+    }
+
+    /**
+     * Every run of consecutive rows in the same chunk is read by the chunk
+     * in one go, e.g. a paged chunk pins each page once.
+     */
+    @Override
+    public void readRows(int[] rows, int offset, int length, int[] dst) {
+        int[] chunkRows = new int[length];
+        int[] values = new int[length];
+        int i = 0;
+        while (i < length) {
+            int row = rows[offset + i];
+            if (row < 0 || row >= size()) {
+                throw new IndexOutOfBoundsException("Row " + row + " out of " + size());
+            }
+            int c = chunkOf(row);
+            int n = 0;
+            while (i + n < length && rows[offset + i + n] >= starts[c]
+                    && rows[offset + i + n] < starts[c + 1]) {
+                chunkRows[n] = rows[offset + i + n] - starts[c];
+                n++;
+            }
+            chunks[c].readRows(chunkRows, 0, n, values);
+            System.arraycopy(values, 0, dst, i, n);
+            i += n;
+        }
+    }
+
+    @Override
+    public long sum(int from, int length) {
+        long sum = 0;
+        int to = from + length;
+        for (int c = chunkOf(from); from < to; c++) {
+            int n = Math.min(to, starts[c + 1]) - from;
+            sum += chunks[c].sum(from - starts[c], n);
+            from += n;
+        }
+        return sum;
+    }
+
+    /**
+     * Every chunk skips blocks with its own zone map, the zone map of the
+     * whole column is never needed.
+     */
+    @Override
+    public void prunedSelect(Comparison comparison, int constant, int from, int length,
+                             IntVector rows) {
+        int to = from + length;
+        for (int c = chunkOf(from); from < to; c++) {
+            int n = Math.min(to, starts[c + 1]) - from;
+            int first = rows.size();
+            chunks[c].prunedSelect(comparison, constant, from - starts[c], n, rows);
+            shift(rows, first, starts[c]);
+            from += n;
+        }
+    }
+
+    /**
+     * Every chunk works on its own encoded form.
+     */
+    @Override
+    public void select(Comparison comparison, int constant, int from, int length, IntVector rows) {
+        int to = from + length;
+        for (int c = chunkOf(from); from < to; c++) {
+            int n = Math.min(to, starts[c + 1]) - from;
+            int first = rows.size();
+            chunks[c].select(comparison, constant, from - starts[c], n, rows);
+            shift(rows, first, starts[c]);
+            from += n;
+        }
+    }
+
+    /**
+     * Turn the row ids of a chunk, from index first of rows on, into row
+     * ids of the whole column.
+     */
+    private static void shift(IntVector rows, int first, int start) {
+        if (start == 0) {
+            return;
+        }
+        int[] data = rows.getData();
+        for (int i = first; i < rows.size(); i++) {
+            data[i] += start;
+        }
+    }
+
+    /**
+     * The statistics of the chunks are combined, the rows are not scanned again.
+     */
+    @Override
+    protected ColumnStatistics computeStatistics() {
+        if (chunks.length == 0) {
+            return ColumnStatistics.collect(this);
+        }
+        ColumnStatistics statistics = chunks[0].getStatistics();
+        for (int c = 1; c < chunks.length; c++) {
+            statistics = ColumnStatistics.merge(statistics, chunks[c].getStatistics());
+        }
+        return statistics;
+    }
+
+    @Override
+    public void addPageFiles(Set<PageFile> files) {
+        for (Column chunk : chunks) {
+            chunk.addPageFiles(files);
+        }
+    }
+}
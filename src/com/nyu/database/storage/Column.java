@@ -0,0 +1,255 @@
+package com.nyu.database.storage;
+
+import java.util.Set;
+
+import com.nyu.database.statistics.ColumnStatistics;
+
+/**
+ * A read-only sequence of int values. Every table in the DB is a set of
+ * named columns, and columns are the only place where the data is kept.
+ * Operators should prefer the bulk {@link #read} method over {@link #get}
+ * when they scan a whole column.
+ */
+public abstract class Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // Scans read the values in batches of this size.
+    protected static final int BATCH_SIZE = 1024;
+
+    // Built on first use, columns don't change once they are in a table.
+    private ZoneMap zoneMap;
+
+    // Collected on first use, or attached when the table is imported.
+    private ColumnStatistics statistics;
+
+    //----------------
+    // Abstract Methods
+    //----------------
+
+    /**
+     * @return the number of values in the column.
+     */
+    public abstract int size();
+
+    /**
+     * @param row the index of the row.
+     * @return the value stored in the given row.
+     */
+    public abstract int get(int row);
+
+    //----------------
+    // Accessors
+    //----------------
+
+    /**
+     * @return the min/max of every block of the column.
+     */
+    public ZoneMap getZoneMap() {
+        if (zoneMap == null) {
+            zoneMap = ZoneMap.build(this, ZoneMap.DEFAULT_BLOCK_SIZE);
+        }
+        return zoneMap;
+    }
+
+    /**
+     * @return the zone map if it is already known, otherwise null.
+     */
+    public ZoneMap getKnownZoneMap() {
+        return zoneMap;
+    }
+
+    /**
+     * Attach a zone map that is already known, e.g. one read from a file.
+     */
+    public void setZoneMap(ZoneMap zoneMap) {
+        this.zoneMap = zoneMap;
+    }
+
+    /**
+     * @return the statistics of the column, they are collected with one
+     * scan the first time they are needed.
+     */
+    public ColumnStatistics getStatistics() {
+        if (statistics == null) {
+            statistics = computeStatistics();
+        }
+        return statistics;
+    }
+
+    /**
+     * @return the statistics if they are already known, otherwise null.
+     * Use it when a scan just to get estimates isn't worth it.
+     */
+    public ColumnStatistics getKnownStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(ColumnStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Derived columns override it when their statistics can be worked out
+     * from the statistics of their inputs.
+     */
+    protected ColumnStatistics computeStatistics() {
+        return ColumnStatistics.collect(this);
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Copy the values of rows [from, from + length) into dst.
+     *
+     * @param from the first row to read.
+     * @param length the number of rows to read.
+     * @param dst the target array.
+     * @param offset the position in dst where the first value goes.
+     */
+    public void read(int from, int length, int[] dst, int offset) {
+        for (int i = 0; i < length; i++) {
+            dst[offset + i] = get(from + i);
+        }
+    }
+
+    /**
+     * Copy the values of rows[offset], ..., rows[offset + length - 1] into
+     * dst, in that order.
+     *
+     * @param rows the row ids to read.
+     * @param offset the position in rows of the first row id.
+     * @param length the number of rows to read.
+     * @param dst the target array, the first value goes to dst[0].
+     */
+    public void readRows(int[] rows, int offset, int length, int[] dst) {
+        for (int i = 0; i < length; i++) {
+            dst[i] = get(rows[offset + i]);
+        }
+    }
+
+    /**
+     * Build a column that contains the given rows of the current column,
+     * in the given order. The result is a view, the values are not copied.
+     *
+     * @param rows the row indexes to pick, the vector must not change afterwards.
+     * @return a new column with rows.size() values.
+     */
+    public Column gather(IntVector rows) {
+        return new SelectionColumn(this, rows.getData(), rows.size());
+    }
+
+    /**
+     * @return a column that holds its own copy of the values. Views use it
+     * when a contiguous array is really needed.
+     */
+    public IntVector materialize() {
+        return new IntVector(toArray(), size());
+    }
+
+    /**
+     * @return a copy of all the values in the column.
+     */
+    public int[] toArray() {
+        int[] result = new int[size()];
+        read(0, size(), result, 0);
+        return result;
+    }
+
+    /**
+     * @return the summation of rows [from, from + length).
+     */
+    public long sum(int from, int length) {
+        long sum = 0;
+        int[] batch = new int[Math.min(length, BATCH_SIZE)];
+        for (int start = from; start < from + length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, from + length - start);
+            read(start, n, batch, 0);
+            for (int i = 0; i < n; i++) {
+                sum += batch[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Find the rows of the whole column whose value satisfies
+     * "value comparison constant". If the zone map is known, blocks that
+     * can't match are skipped and blocks that match as a whole are
+     * accepted without reading them. The zone map isn't built just for
+     * one select, that would cost a scan of its own.
+     *
+     * @param rows the matching row ids are appended to it, in row order.
+     */
+    public void select(Comparison comparison, int constant, IntVector rows) {
+        prunedSelect(comparison, constant, 0, size(), rows);
+    }
+
+    /**
+     * Same as select(comparison, constant, rows), but only for the rows in
+     * [from, from + length), so a select can be cut into morsels and still
+     * skip blocks with the zone map.
+     *
+     * @param rows the matching row ids are appended to it, in row order.
+     */
+    public void prunedSelect(Comparison comparison, int constant, int from, int length,
+                             IntVector rows) {
+        ZoneMap zoneMap = getKnownZoneMap();
+        if (zoneMap == null) {
+            select(comparison, constant, from, length, rows);
+            return;
+        }
+
+        int to = from + length;
+        int blockSize = zoneMap.getBlockSize();
+        for (int block = from / blockSize; block * blockSize < to; block++) {
+            int start = Math.max(block * blockSize, from);
+            int end = Math.min((block + 1) * blockSize, to);
+            if (!zoneMap.mayMatch(block, comparison, constant)) {
+                continue;
+            }
+            if (zoneMap.allMatch(block, comparison, constant)) {
+                addRange(rows, start, end - start);
+            } else {
+                select(comparison, constant, start, end - start, rows);
+            }
+        }
+    }
+
+    /**
+     * Find the rows in [from, from + length) whose value satisfies
+     * "value comparison constant". Encoded columns override it to work on
+     * their encoded form.
+     *
+     * @param rows the matching row ids are appended to it, in row order.
+     */
+    public void select(Comparison comparison, int constant, int from, int length, IntVector rows) {
+        SelectKernel kernel = SelectKernel.of(comparison, constant);
+        int[] batch = new int[Math.min(length, BATCH_SIZE)];
+        int[] selected = new int[batch.length];
+        for (int start = from; start < from + length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, from + length - start);
+            read(start, n, batch, 0);
+            rows.addAll(selected, 0, kernel.filter(batch, n, start, selected));
+        }
+    }
+
+    /**
+     * Add the page files the rows of the column are read from to files.
+     * Columns that keep their values on the heap have none, derived
+     * columns add the ones of their inputs.
+     */
+    public void addPageFiles(Set<PageFile> files) {
+    }
+
+    /**
+     * Append the row ids [from, from + length) to rows.
+     */
+    protected static void addRange(IntVector rows, int from, int length) {
+        rows.addRange(from, length);
+    }
+}
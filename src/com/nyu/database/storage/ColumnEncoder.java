@@ -0,0 +1,91 @@
+package com.nyu.database.storage;
+
+import com.nyu.database.util.IntHashSet;
+
+/**
+ * Pick the smallest representation of a column: plain, bit-packed
+ * frame-of-reference, dictionary or run-length encoding.
+ */
+public class ColumnEncoder {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // Larger dictionaries are not worth the hashing at import time.
+    private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Estimate the size of each encoding from a single pass over the
+     * vector and build the smallest one.
+     *
+     * @param vector the column to encode.
+     * @return an encoded column, or the vector itself if nothing is smaller.
+     */
+    public static Column encode(IntVector vector) {
+        int size = vector.size();
+        if (size == 0) {
+            return vector;
+        }
+        int[] data = vector.getData();
+
+        int min = data[0];
+        int max = data[0];
+        int runNumber = 1;
+        for (int i = 1; i < size; i++) {
+            min = Math.min(min, data[i]);
+            max = Math.max(max, data[i]);
+            if (data[i] != data[i - 1]) {
+                runNumber++;
+            }
+        }
+
+        long plainBytes = 4L * size;
+        int packedWidth = BitPacker.bitsFor((long) max - min);
+        long packedBytes = 8L * BitPacker.wordsFor(size, packedWidth);
+        long runLengthBytes = 8L * runNumber;
+
+        // A dictionary only beats frame-of-reference if the values are few
+        // but far apart, so don't even count them for narrow ranges.
+        int[] dictionary = null;
+        long dictionaryBytes = Long.MAX_VALUE;
+        if (packedWidth > 8) {
+            dictionary = distinctValues(data, size);
+            if (dictionary != null) {
+                int dictionaryWidth = BitPacker.bitsFor(dictionary.length - 1);
+                dictionaryBytes = 8L * BitPacker.wordsFor(size, dictionaryWidth)
+                        + 4L * dictionary.length;
+            }
+        }
+
+        long best = Math.min(Math.min(packedBytes, runLengthBytes), dictionaryBytes);
+        if (best >= plainBytes) {
+            return vector;
+        }
+        if (best == runLengthBytes) {
+            return new RunLengthColumn(data, size, runNumber);
+        }
+        if (best == packedBytes) {
+            return new BitPackedColumn(data, size, min, max);
+        }
+        return new DictionaryColumn(data, size, dictionary);
+    }
+
+    /**
+     * @return the distinct values in ascending order, or null if there are
+     * more than MAX_DICTIONARY_SIZE of them.
+     */
+    private static int[] distinctValues(int[] data, int size) {
+        IntHashSet set = new IntHashSet();
+        for (int i = 0; i < size; i++) {
+            if (set.add(data[i]) && set.size() > MAX_DICTIONARY_SIZE) {
+                return null;
+            }
+        }
+        return set.toSortedArray();
+    }
+}
@@ -0,0 +1,122 @@
+package com.nyu.database.storage;
+
+/**
+ * A condition "value1 comparison value2" between two columns, compiled
+ * into a loop over a pair of batches. See SelectKernel, the loops are
+ * built the same way.
+ */
+public abstract class CompareKernel {
+
+    //----------------
+    // Abstract Methods
+    //----------------
+
+    /**
+     * Write start + i to rows for every i < n where values1[i] and
+     * values2[i] match.
+     *
+     * @param values1 the values of a batch of the first column.
+     * @param values2 the values of the same rows of the second column.
+     * @param n the number of values of the batches.
+     * @param start the row id of the first values.
+     * @param rows where the matching row ids go, it must hold n values.
+     * @return the number of matching rows.
+     */
+    public abstract int filter(int[] values1, int[] values2, int n, int start, int[] rows);
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @return the kernel of "value1 comparison value2".
+     */
+    public static CompareKernel of(Comparison comparison) {
+        switch (comparison) {
+            case LESS:
+                return new Less();
+            case LESS_EQUAL:
+                return new LessEqual();
+            case GREATER:
+                return new Greater();
+            case GREATER_EQUAL:
+                return new GreaterEqual();
+            case EQUAL:
+                return new Equal();
+            default:
+                return new NotEqual();
+        }
+    }
+
+    private static final class Less extends CompareKernel {
+        @Override
+        public int filter(int[] values1, int[] values2, int n, int start, int[] rows) {
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values1[i] < values2[i] ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class LessEqual extends CompareKernel {
+        @Override
+        public int filter(int[] values1, int[] values2, int n, int start, int[] rows) {
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values1[i] <= values2[i] ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class Greater extends CompareKernel {
+        @Override
+        public int filter(int[] values1, int[] values2, int n, int start, int[] rows) {
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values1[i] > values2[i] ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class GreaterEqual extends CompareKernel {
+        @Override
+        public int filter(int[] values1, int[] values2, int n, int start, int[] rows) {
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values1[i] >= values2[i] ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class Equal extends CompareKernel {
+        @Override
+        public int filter(int[] values1, int[] values2, int n, int start, int[] rows) {
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values1[i] == values2[i] ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class NotEqual extends CompareKernel {
+        @Override
+        public int filter(int[] values1, int[] values2, int n, int start, int[] rows) {
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values1[i] != values2[i] ? 1 : 0;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.nyu.database.storage;
+
+/**
+ * The comparison operators that can appear in a condition.
+ */
+public enum Comparison {
+    LESS("<"),
+    LESS_EQUAL("<="),
+    GREATER(">"),
+    GREATER_EQUAL(">="),
+    EQUAL("="),
+    NOT_EQUAL("!=");
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private final String operator;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    Comparison(String operator) {
+        this.operator = operator;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public String getOperator() {
+        return operator;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @return the comparison that holds for (b, a) whenever this one holds
+     * for (a, b), e.g. "<" for ">".
+     */
+    public Comparison reverse() {
+        switch (this) {
+            case LESS:
+                return GREATER;
+            case LESS_EQUAL:
+                return GREATER_EQUAL;
+            case GREATER:
+                return LESS;
+            case GREATER_EQUAL:
+                return LESS_EQUAL;
+            default:
+                return this;
+        }
+    }
+
+    /**
+     * @param operator one of '>', '<', '=', '>=', '<=' or '!='.
+     * @return the matching comparison.
+     * @throws IllegalArgumentException if the operator is not supported.
+     */
+    public static Comparison fromOperator(String operator) {
+        for (Comparison comparison : values()) {
+            if (comparison.operator.equals(operator)) {
+                return comparison;
+            }
+        }
+        throw new IllegalArgumentException(
+                "Error! The operator can only be '>', '<', '=', "
+                        + "'>=', '<=', or '!='. Please recheck.");
+    }
+
+    /**
+     * @return the comparison that holds for (a, b) exactly when this one
+     * doesn't, e.g. ">=" for "<".
+     */
+    public Comparison negate() {
+        switch (this) {
+            case LESS:
+                return GREATER_EQUAL;
+            case LESS_EQUAL:
+                return GREATER;
+            case GREATER:
+                return LESS_EQUAL;
+            case GREATER_EQUAL:
+                return LESS;
+            case EQUAL:
+                return NOT_EQUAL;
+            default:
+                return EQUAL;
+        }
+    }
+
+    /**
+     * @return whether "a operator b" holds.
+     */
+    public boolean test(int a, int b) {
+        switch (this) {
+            case LESS:
+                return a < b;
+            case LESS_EQUAL:
+                return a <= b;
+            case GREATER:
+                return a > b;
+            case GREATER_EQUAL:
+                return a >= b;
+            case EQUAL:
+                return a == b;
+            default:
+                return a != b;
+        }
+    }
+}
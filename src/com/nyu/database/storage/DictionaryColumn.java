@@ -0,0 +1,128 @@
+package com.nyu.database.storage;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary encoding: the distinct values are kept once in a sorted
+ * array and every row stores the bit-packed index of its value.
+ */
+public class DictionaryColumn extends Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private final int size;
+    private final int[] dictionary;
+    private final int width;
+    private final long[] words;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param values the values to encode, the first size ones are used.
+     * @param size the number of values.
+     * @param dictionary all the distinct values, in ascending order.
+     */
+    public DictionaryColumn(int[] values, int size, int[] dictionary) {
+        this.size = size;
+        this.dictionary = dictionary;
+        this.width = BitPacker.bitsFor(dictionary.length - 1);
+        int[] codes = new int[size];
+        for (int i = 0; i < size; i++) {
+            codes[i] = Arrays.binarySearch(dictionary, values[i]);
+        }
+        this.words = BitPacker.pack(codes, size, width);
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int[] getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int row) {
+        if (row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+        return dictionary[BitPacker.get(words, width, row)];
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    @Override
+    public void read(int from, int length, int[] dst, int offset) {
+        BitPacker.unpack(words, width, from, length, dst, offset);
+        for (int i = offset; i < offset + length; i++) {
+            dst[i] = dictionary[dst[i]];
+        }
+    }
+
+    /**
+     * Count how often each code occurs, then add up value * count.
+     */
+    @Override
+    public long sum(int from, int length) {
+        long[] counts = new long[dictionary.length];
+        int[] codes = new int[Math.min(length, BATCH_SIZE)];
+        for (int start = from; start < from + length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, from + length - start);
+            BitPacker.unpack(words, width, start, n, codes, 0);
+            for (int i = 0; i < n; i++) {
+                counts[codes[i]]++;
+            }
+        }
+        long sum = 0;
+        for (int code = 0; code < dictionary.length; code++) {
+            sum += dictionary[code] * counts[code];
+        }
+        return sum;
+    }
+
+    /**
+     * Evaluate the condition once per distinct value, then only look up
+     * the result for each code.
+     */
+    @Override
+    public void select(Comparison comparison, int constant, int from, int length, IntVector rows) {
+        // 1 for the codes whose value matches, 0 for the others.
+        int[] matches = new int[dictionary.length];
+        int matchNumber = 0;
+        for (int code = 0; code < dictionary.length; code++) {
+            matches[code] = comparison.test(dictionary[code], constant) ? 1 : 0;
+            matchNumber += matches[code];
+        }
+        if (matchNumber == 0) {
+            return;
+        }
+        if (matchNumber == dictionary.length) {
+            addRange(rows, from, length);
+            return;
+        }
+
+        int[] codes = new int[Math.min(length, BATCH_SIZE)];
+        int[] selected = new int[codes.length];
+        for (int start = from; start < from + length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, from + length - start);
+            BitPacker.unpack(words, width, start, n, codes, 0);
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                selected[count] = start + i;
+                count += matches[codes[i]];
+            }
+            rows.addAll(selected, 0, count);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.nyu.database.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sort the rows of a table that doesn't fit in memory by one of its columns.
+ *
+ * The rows are cut into runs that fit the memory budget. Every run is
+ * sorted in memory and written to a temporary file, one row after the
+ * other as little endian ints. The runs are then merged with a heap, each
+ * one read through its own buffer, and the merged rows are appended to
+ * paged columns. Ties are broken by the position of the row in the input,
+ * so the sort is stable.
+ */
+public class ExternalSort {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // The smallest read buffer of a run during the merge.
+    private static final int MIN_RUN_BUFFER = 64 << 10;
+    private static final int WRITE_BUFFER = 1 << 20;
+    private static final int BATCH_SIZE = 4096;
+
+    private final File directory;
+    private final long memoryBudget;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param directory where the runs and the sorted columns are stored.
+     * @param memoryBudget roughly how many bytes the sort may use.
+     */
+    public ExternalSort(File directory, long memoryBudget) {
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @param columns the columns of the table, they must have the same size.
+     * @param key the index of the column to sort by.
+     * @return the sorted columns, in the same order as the input ones.
+     * @throws IOException if the runs or the result can't be written.
+     */
+    public List<Column> sort(List<Column> columns, int key) throws IOException {
+        int columnNumber = columns.size();
+        int size = columns.get(0).size();
+
+        // While a run is sorted every row takes its values and one long.
+        long runRows = memoryBudget / (4L * columnNumber + 8);
+        runRows = Math.max(BATCH_SIZE, Math.min(runRows, Integer.MAX_VALUE - 8));
+
+        List<Path> runs = new ArrayList<>();
+        try {
+            for (long from = 0; from < size; from += runRows) {
+                int n = (int) Math.min(runRows, size - from);
+                runs.add(writeRun(columns, key, (int) from, n));
+            }
+            return merge(runs, columnNumber, key);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     * Sort the rows [from, from + length) in memory and write them to a
+     * new run file.
+     */
+    private Path writeRun(List<Column> columns, int key, int from, int length)
+            throws IOException {
+        int columnNumber = columns.size();
+        int[][] values = new int[columnNumber][length];
+        for (int j = 0; j < columnNumber; j++) {
+            columns.get(j).read(from, length, values[j], 0);
+        }
+
+        // The key in the high half, the row in the low half.
+        long[] order = new long[length];
+        for (int i = 0; i < length; i++) {
+            order[i] = ((long) values[key][i] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        Path run = File.createTempFile("minidb", ".run", directory).toPath();
+        try (FileChannel channel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            int rowBytes = 4 * columnNumber;
+            for (long packed : order) {
+                if (buffer.remaining() < rowBytes) {
+                    writeFully(channel, buffer);
+                }
+                int row = (int) packed;
+                for (int j = 0; j < columnNumber; j++) {
+                    buffer.putInt(values[j][row]);
+                }
+            }
+            writeFully(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            // The caller only deletes the runs it got back, so a half written
+            // run, e.g. on a full disk, is deleted here.
+            Files.deleteIfExists(run);
+            throw e;
+        }
+        return run;
+    }
+
+    /**
+     * Merge the runs into paged columns.
+     */
+    private List<Column> merge(List<Path> runs, int columnNumber, int key) throws IOException {
+        int bufferSize = (int) Math.min(Integer.MAX_VALUE,
+                Math.max(MIN_RUN_BUFFER, memoryBudget / (2L * Math.max(runs.size(), 1))));
+        List<RunReader> readers = new ArrayList<>();
+        PageFile pageFile = null;
+        try {
+            // The heap holds the runs that still have rows, ordered by their
+            // current key and then by run, as earlier runs hold earlier rows.
+            int[] heap = new int[runs.size()];
+            int heapSize = 0;
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run, columnNumber, bufferSize);
+                readers.add(reader);
+                if (reader.next()) {
+                    heap[heapSize] = readers.size() - 1;
+                    siftUp(heap, heapSize++, readers, key);
+                }
+            }
+
+            pageFile = new PageFile(directory);
+            List<PagedColumn.Builder> builders = new ArrayList<>();
+            for (int j = 0; j < columnNumber; j++) {
+                builders.add(new PagedColumn.Builder(pageFile, BufferPool.getDefault()));
+            }
+            int[][] batches = new int[columnNumber][BATCH_SIZE];
+            int batchSize = 0;
+
+            while (heapSize > 0) {
+                RunReader reader = readers.get(heap[0]);
+                for (int j = 0; j < columnNumber; j++) {
+                    batches[j][batchSize] = reader.row[j];
+                }
+                if (++batchSize == BATCH_SIZE) {
+                    for (int j = 0; j < columnNumber; j++) {
+                        builders.get(j).addAll(batches[j], 0, batchSize);
+                    }
+                    batchSize = 0;
+                }
+                if (!reader.next()) {
+                    heap[0] = heap[--heapSize];
+                }
+                siftDown(heap, heapSize, readers, key);
+            }
+            List<Column> result = new ArrayList<>();
+            for (int j = 0; j < columnNumber; j++) {
+                builders.get(j).addAll(batches[j], 0, batchSize);
+                result.add(builders.get(j).build());
+            }
+            return result;
+        } catch (IOException | RuntimeException e) {
+            // No table will own the half written result, delete it now.
+            if (pageFile != null) {
+                pageFile.close();
+            }
+            throw e;
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static boolean less(int run1, int run2, List<RunReader> readers, int key) {
+        int key1 = readers.get(run1).row[key];
+        int key2 = readers.get(run2).row[key];
+        return key1 < key2 || (key1 == key2 && run1 < run2);
+    }
+
+    private static void siftUp(int[] heap, int position, List<RunReader> readers, int key) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!less(heap[position], heap[parent], readers, key)) {
+                return;
+            }
+            swap(heap, position, parent);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heap, int heapSize, List<RunReader> readers, int key) {
+        int position = 0;
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < heapSize && less(heap[left], heap[smallest], readers, key)) {
+                smallest = left;
+            }
+            if (right < heapSize && less(heap[right], heap[smallest], readers, key)) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(heap, position, smallest);
+            position = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Read the rows of a run one by one through a buffer.
+     */
+    private static class RunReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int[] row;
+
+        private RunReader(Path run, int columnNumber, int bufferSize) throws IOException {
+            this.channel = FileChannel.open(run, StandardOpenOption.READ);
+            int rowBytes = 4 * columnNumber;
+            this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize / rowBytes, 1) * rowBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            this.buffer.limit(0);
+            this.row = new int[columnNumber];
+        }
+
+        /**
+         * Move to the next row of the run.
+         *
+         * @return false if there is no row left.
+         */
+        private boolean next() throws IOException {
+            if (buffer.remaining() < 4 * row.length) {
+                buffer.compact();
+                int n;
+                do {
+                    n = channel.read(buffer);
+                } while (n > 0 && buffer.hasRemaining());
+                buffer.flip();
+                if (buffer.remaining() < 4 * row.length) {
+                    return false;
+                }
+            }
+            for (int j = 0; j < row.length; j++) {
+                row[j] = buffer.getInt();
+            }
+            return true;
+        }
+
+        private void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.nyu.database.storage;
+
+import java.util.Arrays;
+
+/**
+ * A growable column backed by a single int array.
+ */
+public class IntVector extends Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] data;
+    private int size;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public IntVector() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntVector(int capacity) {
+        this.data = new int[Math.max(capacity, 1)];
+        this.size = 0;
+    }
+
+    /**
+     * Wrap an existing array without copying it.
+     *
+     * @param data the values of the column.
+     * @param size how many values of data are in use.
+     */
+    public IntVector(int[] data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public int get(int row) {
+        if (row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+        return this.data[row];
+    }
+
+    public void set(int row, int value) {
+        if (row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+        this.data[row] = value;
+    }
+
+    /**
+     * @return the backing array, only the first size() values are valid.
+     */
+    public int[] getData() {
+        return this.data;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    public void add(int value) {
+        if (size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    public void addAll(int[] values, int offset, int length) {
+        if (size + length > data.length) {
+            grow(size + length);
+        }
+        System.arraycopy(values, offset, data, size, length);
+        size += length;
+    }
+
+    /**
+     * Add the values from, from + 1, ..., from + length - 1.
+     */
+    public void addRange(int from, int length) {
+        if (size + length > data.length) {
+            grow(size + length);
+        }
+        for (int i = 0; i < length; i++) {
+            data[size + i] = from + i;
+        }
+        size += length;
+    }
+
+    public void addAll(Column column) {
+        if (size + column.size() > data.length) {
+            grow(size + column.size());
+        }
+        column.read(0, column.size(), data, size);
+        size += column.size();
+    }
+
+    private void grow(int minCapacity) {
+        int newCapacity = Math.max(data.length * 2, minCapacity);
+        data = Arrays.copyOf(data, newCapacity);
+    }
+
+    @Override
+    public void read(int from, int length, int[] dst, int offset) {
+        if (from + length > size) {
+            throw new IndexOutOfBoundsException("Row " + (from + length - 1) + " out of " + size);
+        }
+        System.arraycopy(data, from, dst, offset, length);
+    }
+
+    @Override
+    public void readRows(int[] rows, int offset, int length, int[] dst) {
+        for (int i = 0; i < length; i++) {
+            int row = rows[offset + i];
+            if (row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+            }
+            dst[i] = data[row];
+        }
+    }
+
+    @Override
+    public IntVector materialize() {
+        return this;
+    }
+
+    @Override
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
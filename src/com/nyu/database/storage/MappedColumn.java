@@ -0,0 +1,74 @@
+package com.nyu.database.storage;
+
+import java.nio.IntBuffer;
+
+/**
+ * A column whose values live in a memory mapped file. Nothing is parsed or
+ * copied when the column is created, pages are read by the OS on demand.
+ *
+ * A single mapping can't be larger than 2GB, so the values are mapped in
+ * segments of SEGMENT_ROWS rows.
+ */
+public class MappedColumn extends Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final int SEGMENT_SHIFT = 28;
+    // 1GB of ints per segment.
+    public static final int SEGMENT_ROWS = 1 << SEGMENT_SHIFT;
+
+    private final IntBuffer[] segments;
+    private final int size;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param segments views of the mapped values, position 0 of the first
+     * one is the first row. Every segment but the last holds SEGMENT_ROWS
+     * rows.
+     */
+    public MappedColumn(IntBuffer[] segments) {
+        this.segments = segments;
+        long size = 0;
+        for (IntBuffer segment : segments) {
+            size += segment.limit();
+        }
+        this.size = (int) size;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int row) {
+        return segments[row >>> SEGMENT_SHIFT].get(row & (SEGMENT_ROWS - 1));
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    @Override
+    public void read(int from, int length, int[] dst, int offset) {
+        int to = from + length;
+        while (from < to) {
+            int s = from >>> SEGMENT_SHIFT;
+            int n = (int) Math.min(to, (long) (s + 1) << SEGMENT_SHIFT) - from;
+            IntBuffer view = segments[s].duplicate();
+            view.position(from & (SEGMENT_ROWS - 1));
+            view.get(dst, offset, n);
+            from += n;
+            offset += n;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.nyu.database.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A file on local disk made of fixed-size pages of ints. Pages are only
+ * appended and never change afterwards, so they can be dropped from memory
+ * at any time and read again later.
+ *
+ * The file is deleted when it is closed, i.e. when no table uses it any
+ * more. The files still open when the JVM exits are deleted then.
+ */
+public class PageFile implements Closeable {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // 64KB per page.
+    public static final int PAGE_INTS = 16384;
+    private static final int PAGE_BYTES = PAGE_INTS * 4;
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    // The files that are not closed yet, for the shutdown hook.
+    private static final Set<PageFile> OPEN_FILES = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (PageFile file : new ArrayList<>(OPEN_FILES)) {
+                file.close();
+            }
+        }));
+    }
+
+    private final int id;
+    private final Path path;
+    private final FileChannel channel;
+    private int pageNumber;
+    private boolean closed;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * Create an empty page file in the given directory.
+     */
+    public PageFile(File directory) throws IOException {
+        this.path = File.createTempFile("minidb", ".pages", directory).toPath();
+        this.id = NEXT_ID.getAndIncrement();
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        this.pageNumber = 0;
+        this.closed = false;
+        OPEN_FILES.add(this);
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    /**
+     * @return a number that is unique among the page files of the process.
+     */
+    public int getId() {
+        return id;
+    }
+
+    public synchronized int getPageNumber() {
+        return pageNumber;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Write a new page at the end of the file.
+     *
+     * @param values the content of the page, at most PAGE_INTS values.
+     * @param length the number of values to write.
+     * @return the id of the new page.
+     */
+    public synchronized int appendPage(int[] values, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asIntBuffer().put(values, 0, length);
+        int pageId = pageNumber;
+        long position = (long) pageId * PAGE_BYTES;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        pageNumber++;
+        return pageId;
+    }
+
+    /**
+     * Read a whole page into dst.
+     */
+    public void readPage(int pageId, int[] dst, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        long position = (long) pageId * PAGE_BYTES;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new IOException("Page " + pageId + " is beyond the end of the file.");
+            }
+        }
+        buffer.flip();
+        buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(dst, 0, PAGE_INTS);
+    }
+
+    /**
+     * Drop the pages of the file from the buffer pool and delete the file.
+     * The columns stored in it can't be read any more. Closing a file
+     * twice does nothing.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        OPEN_FILES.remove(this);
+        BufferPool.getDefault().discard(this);
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // The file stays in the temporary directory, nothing else to do.
+            System.out.println("Warning! The page file " + path + " can't be deleted: "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * @return a buffer that can hold one page, for readPage().
+     */
+    static ByteBuffer allocatePageBuffer() {
+        return ByteBuffer.allocateDirect(PAGE_BYTES);
+    }
+}
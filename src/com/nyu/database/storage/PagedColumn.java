@@ -0,0 +1,179 @@
+package com.nyu.database.storage;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * A column stored in pages of a page file. Only the pages that are being
+ * scanned are in memory, they are fetched through a buffer pool, so the
+ * column can be much larger than the heap.
+ */
+public class PagedColumn extends Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private final PageFile file;
+    private final int[] pageIds;
+    private final int size;
+    private final BufferPool pool;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public PagedColumn(PageFile file, int[] pageIds, int size, BufferPool pool) {
+        this.file = file;
+        this.pageIds = pageIds;
+        this.size = size;
+        this.pool = pool;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int row) {
+        if (row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+        int pageId = pageIds[row / PageFile.PAGE_INTS];
+        int[] page = pool.pin(file, pageId);
+        try {
+            return page[row % PageFile.PAGE_INTS];
+        } finally {
+            pool.unpin(file, pageId);
+        }
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Copy the rows page by page, each page is pinned only while it is copied.
+     */
+    @Override
+    public void read(int from, int length, int[] dst, int offset) {
+        if (from + length > size) {
+            throw new IndexOutOfBoundsException("Row " + (from + length - 1) + " out of " + size);
+        }
+        while (length > 0) {
+            int pageIndex = from / PageFile.PAGE_INTS;
+            int inPage = from % PageFile.PAGE_INTS;
+            int n = Math.min(length, PageFile.PAGE_INTS - inPage);
+            int pageId = pageIds[pageIndex];
+            int[] page = pool.pin(file, pageId);
+            try {
+                System.arraycopy(page, inPage, dst, offset, n);
+            } finally {
+                pool.unpin(file, pageId);
+            }
+            from += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * A page stays pinned while the next rows are in it, so rows that are
+     * close to each other cost one pin, not one per row.
+     */
+    @Override
+    public void readRows(int[] rows, int offset, int length, int[] dst) {
+        int pinnedPage = -1;
+        int[] page = null;
+        try {
+            for (int i = 0; i < length; i++) {
+                int row = rows[offset + i];
+                if (row < 0 || row >= size) {
+                    throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+                }
+                int pageIndex = row / PageFile.PAGE_INTS;
+                if (pageIndex != pinnedPage) {
+                    if (page != null) {
+                        page = null;
+                        pool.unpin(file, pageIds[pinnedPage]);
+                    }
+                    page = pool.pin(file, pageIds[pageIndex]);
+                    pinnedPage = pageIndex;
+                }
+                dst[i] = page[row % PageFile.PAGE_INTS];
+            }
+        } finally {
+            if (page != null) {
+                pool.unpin(file, pageIds[pinnedPage]);
+            }
+        }
+    }
+
+    @Override
+    public void addPageFiles(Set<PageFile> files) {
+        files.add(file);
+    }
+
+    /**
+     * Build a paged column by appending values. Full pages go to disk
+     * right away, so at most one page per builder is kept in memory.
+     */
+    public static class Builder {
+
+        private final PageFile file;
+        private final BufferPool pool;
+        private final int[] page;
+        private final IntVector pageIds;
+        private int fill;
+        private int size;
+
+        public Builder(PageFile file, BufferPool pool) {
+            this.file = file;
+            this.pool = pool;
+            this.page = new int[PageFile.PAGE_INTS];
+            this.pageIds = new IntVector();
+            this.fill = 0;
+            this.size = 0;
+        }
+
+        public void addAll(int[] values, int offset, int length) throws IOException {
+            while (length > 0) {
+                int n = Math.min(length, PageFile.PAGE_INTS - fill);
+                System.arraycopy(values, offset, page, fill, n);
+                fill += n;
+                size += n;
+                offset += n;
+                length -= n;
+                if (fill == PageFile.PAGE_INTS) {
+                    flush();
+                }
+            }
+        }
+
+        public void addAll(Column column) throws IOException {
+            int[] batch = new int[PageFile.PAGE_INTS];
+            for (int from = 0; from < column.size(); from += batch.length) {
+                int n = Math.min(batch.length, column.size() - from);
+                column.read(from, n, batch, 0);
+                addAll(batch, 0, n);
+            }
+        }
+
+        public PagedColumn build() throws IOException {
+            if (fill > 0) {
+                flush();
+            }
+            return new PagedColumn(file, pageIds.toArray(), size, pool);
+        }
+
+        private void flush() throws IOException {
+            pageIds.add(file.appendPage(page, fill));
+            fill = 0;
+        }
+    }
+}
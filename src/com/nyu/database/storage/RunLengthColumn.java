@@ -0,0 +1,112 @@
+package com.nyu.database.storage;
+
+import java.util.Arrays;
+
+/**
+ * Run-length encoding: consecutive equal values are stored once, together
+ * with the row where their run ends. Good for sorted or clustered columns.
+ */
+public class RunLengthColumn extends Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // The value of each run.
+    private final int[] values;
+    // The row right after the end of each run, in ascending order.
+    private final int[] ends;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param data the values to encode, the first size ones are used.
+     * @param size the number of values.
+     * @param runNumber the number of runs in data.
+     */
+    public RunLengthColumn(int[] data, int size, int runNumber) {
+        this.values = new int[runNumber];
+        this.ends = new int[runNumber];
+        int run = -1;
+        for (int i = 0; i < size; i++) {
+            if (run < 0 || data[i] != values[run]) {
+                run++;
+                values[run] = data[i];
+            }
+            ends[run] = i + 1;
+        }
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int getRunNumber() {
+        return values.length;
+    }
+
+    @Override
+    public int size() {
+        return ends.length == 0 ? 0 : ends[ends.length - 1];
+    }
+
+    @Override
+    public int get(int row) {
+        if (row >= size()) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size());
+        }
+        return values[findRun(row)];
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @return the index of the run that contains the row.
+     */
+    private int findRun(int row) {
+        int run = Arrays.binarySearch(ends, row + 1);
+        return run >= 0 ? run : -run - 1;
+    }
+
+    @Override
+    public void read(int from, int length, int[] dst, int offset) {
+        int to = from + length;
+        for (int run = findRun(from); from < to; run++) {
+            int runEnd = Math.min(ends[run], to);
+            Arrays.fill(dst, offset, offset + runEnd - from, values[run]);
+            offset += runEnd - from;
+            from = runEnd;
+        }
+    }
+
+    @Override
+    public long sum(int from, int length) {
+        long sum = 0;
+        int to = from + length;
+        for (int run = findRun(from); from < to; run++) {
+            int runEnd = Math.min(ends[run], to);
+            sum += (long) values[run] * (runEnd - from);
+            from = runEnd;
+        }
+        return sum;
+    }
+
+    /**
+     * Evaluate the condition once per run.
+     */
+    @Override
+    public void select(Comparison comparison, int constant, int from, int length, IntVector rows) {
+        int to = from + length;
+        for (int run = findRun(from); from < to; run++) {
+            int runEnd = Math.min(ends[run], to);
+            if (comparison.test(values[run], constant)) {
+                addRange(rows, from, runEnd - from);
+            }
+            from = runEnd;
+        }
+    }
+}
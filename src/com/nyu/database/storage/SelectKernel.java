@@ -0,0 +1,170 @@
+package com.nyu.database.storage;
+
+/**
+ * A condition "value comparison constant" compiled into a loop over a batch
+ * of values. The operator is resolved once, when the kernel is built, and
+ * every operator has its own class, so the loop the JIT sees has a single
+ * comparison and no call in it.
+ *
+ * The loops don't branch on the values: the row id is always written and
+ * the output position only moves forward when the row matches. Selective
+ * and unselective conditions run at the same speed, there is no branch to
+ * mispredict.
+ */
+public abstract class SelectKernel {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    protected final int constant;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    protected SelectKernel(int constant) {
+        this.constant = constant;
+    }
+
+    //----------------
+    // Abstract Methods
+    //----------------
+
+    /**
+     * Write start + i to rows for every i < n where values[i] matches.
+     *
+     * @param values the values of a batch.
+     * @param n the number of values of the batch.
+     * @param start the row id of values[0].
+     * @param rows where the matching row ids go, it must hold n values.
+     * @return the number of matching rows.
+     */
+    public abstract int filter(int[] values, int n, int start, int[] rows);
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @return the kernel of "value comparison constant".
+     */
+    public static SelectKernel of(Comparison comparison, int constant) {
+        switch (comparison) {
+            case LESS:
+                return new Less(constant);
+            case LESS_EQUAL:
+                return new LessEqual(constant);
+            case GREATER:
+                return new Greater(constant);
+            case GREATER_EQUAL:
+                return new GreaterEqual(constant);
+            case EQUAL:
+                return new Equal(constant);
+            default:
+                return new NotEqual(constant);
+        }
+    }
+
+    private static final class Less extends SelectKernel {
+        private Less(int constant) {
+            super(constant);
+        }
+
+        @Override
+        public int filter(int[] values, int n, int start, int[] rows) {
+            int c = constant;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values[i] < c ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class LessEqual extends SelectKernel {
+        private LessEqual(int constant) {
+            super(constant);
+        }
+
+        @Override
+        public int filter(int[] values, int n, int start, int[] rows) {
+            int c = constant;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values[i] <= c ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class Greater extends SelectKernel {
+        private Greater(int constant) {
+            super(constant);
+        }
+
+        @Override
+        public int filter(int[] values, int n, int start, int[] rows) {
+            int c = constant;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values[i] > c ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class GreaterEqual extends SelectKernel {
+        private GreaterEqual(int constant) {
+            super(constant);
+        }
+
+        @Override
+        public int filter(int[] values, int n, int start, int[] rows) {
+            int c = constant;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values[i] >= c ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class Equal extends SelectKernel {
+        private Equal(int constant) {
+            super(constant);
+        }
+
+        @Override
+        public int filter(int[] values, int n, int start, int[] rows) {
+            int c = constant;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values[i] == c ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static final class NotEqual extends SelectKernel {
+        private NotEqual(int constant) {
+            super(constant);
+        }
+
+        @Override
+        public int filter(int[] values, int n, int start, int[] rows) {
+            int c = constant;
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                rows[count] = start + i;
+                count += values[i] != c ? 1 : 0;
+            }
+            return count;
+        }
+    }
+}
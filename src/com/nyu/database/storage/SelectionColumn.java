@@ -0,0 +1,117 @@
+package com.nyu.database.storage;
+
+import java.util.Set;
+
+/**
+ * A derived column that doesn't hold any value itself. It keeps a reference
+ * to a base column and a vector of row ids (a selection or a permutation)
+ * into it, so select, sort and join don't need to copy the data.
+ *
+ * Several columns of the same derived table share one row id vector.
+ */
+public class SelectionColumn extends Column {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private final Column base;
+    private final int[] rows;
+    private final int size;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param base the column that holds the values, never a SelectionColumn.
+     * @param rows the row ids into base, the first size ones are used.
+     * @param size the number of rows of the new column.
+     */
+    public SelectionColumn(Column base, int[] rows, int size) {
+        this.base = base;
+        this.rows = rows;
+        this.size = size;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public Column getBase() {
+        return base;
+    }
+
+    public int[] getRows() {
+        return rows;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int get(int row) {
+        if (row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+        }
+        return base.get(rows[row]);
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    @Override
+    public void read(int from, int length, int[] dst, int offset) {
+        if (from + length > size) {
+            throw new IndexOutOfBoundsException("Row " + (from + length - 1) + " out of " + size);
+        }
+        if (base instanceof IntVector) {
+            int[] data = ((IntVector) base).getData();
+            for (int i = 0; i < length; i++) {
+                dst[offset + i] = data[rows[from + i]];
+            }
+        } else if (offset == 0) {
+            // The base reads the rows in one go, e.g. a paged column pins
+            // each page once.
+            base.readRows(rows, from, length, dst);
+        } else {
+            int[] values = new int[length];
+            base.readRows(rows, from, length, values);
+            System.arraycopy(values, 0, dst, offset, length);
+        }
+    }
+
+    /**
+     * Pick rows of this column. The row ids are translated into row ids of
+     * the base column, so views never stack on top of each other.
+     */
+    @Override
+    public Column gather(IntVector selected) {
+        return new SelectionColumn(base, compose(selected), selected.size());
+    }
+
+    /**
+     * @return the row ids of the base column that the selected rows of
+     * this column point to.
+     */
+    public int[] compose(IntVector selected) {
+        int[] selectedRows = selected.getData();
+        int[] composed = new int[selected.size()];
+        for (int i = 0; i < composed.length; i++) {
+            int row = selectedRows[i];
+            if (row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " out of " + size);
+            }
+            composed[i] = rows[row];
+        }
+        return composed;
+    }
+
+    @Override
+    public void addPageFiles(Set<PageFile> files) {
+        base.addPageFiles(files);
+    }
+}
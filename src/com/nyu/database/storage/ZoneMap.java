@@ -0,0 +1,151 @@
+package com.nyu.database.storage;
+
+import java.util.Arrays;
+
+/**
+ * The minimum and maximum value of every block of rows of a column.
+ * Block i covers rows [i * blockSize, min((i + 1) * blockSize, size)).
+ */
+public class ZoneMap {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private final int blockSize;
+    private final int[] min;
+    private final int[] max;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public ZoneMap(int blockSize, int[] min, int[] max) {
+        this.blockSize = blockSize;
+        this.min = min;
+        this.max = max;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public int getBlockNumber() {
+        return min.length;
+    }
+
+    public int getMin(int block) {
+        return min[block];
+    }
+
+    public int getMax(int block) {
+        return max[block];
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @return false if no row of the block can satisfy
+     * "value comparison constant", so the block can be skipped.
+     */
+    public boolean mayMatch(int block, Comparison comparison, int constant) {
+        int blockMin = min[block];
+        int blockMax = max[block];
+        switch (comparison) {
+            case LESS:
+                return blockMin < constant;
+            case LESS_EQUAL:
+                return blockMin <= constant;
+            case GREATER:
+                return blockMax > constant;
+            case GREATER_EQUAL:
+                return blockMax >= constant;
+            case EQUAL:
+                return blockMin <= constant && constant <= blockMax;
+            default:
+                return blockMin != constant || blockMax != constant;
+        }
+    }
+
+    /**
+     * @return true if every row of the block satisfies
+     * "value comparison constant", so the block needn't be read.
+     */
+    public boolean allMatch(int block, Comparison comparison, int constant) {
+        int blockMin = min[block];
+        int blockMax = max[block];
+        switch (comparison) {
+            case LESS:
+                return blockMax < constant;
+            case LESS_EQUAL:
+                return blockMax <= constant;
+            case GREATER:
+                return blockMin > constant;
+            case GREATER_EQUAL:
+                return blockMin >= constant;
+            case EQUAL:
+                return blockMin == constant && blockMax == constant;
+            default:
+                return constant < blockMin || constant > blockMax;
+        }
+    }
+
+    /**
+     * Build the zone map of a column whose first rows are the ones described
+     * by this zone map, e.g. after rows were appended to it. Only the last
+     * block of this zone map and the new blocks are scanned.
+     *
+     * @param column the grown column.
+     * @return a new zone map, this one doesn't change.
+     */
+    public ZoneMap extend(Column column) {
+        int size = column.size();
+        int blockNumber = (size + blockSize - 1) / blockSize;
+        // The last block may have been partial, so it is built again.
+        int firstBlock = Math.max(min.length - 1, 0);
+        int[] newMin = Arrays.copyOf(min, blockNumber);
+        int[] newMax = Arrays.copyOf(max, blockNumber);
+        buildBlocks(column, firstBlock, newMin, newMax);
+        return new ZoneMap(blockSize, newMin, newMax);
+    }
+
+    /**
+     * Scan a column once and record the bounds of each block.
+     */
+    public static ZoneMap build(Column column, int blockSize) {
+        int blockNumber = (column.size() + blockSize - 1) / blockSize;
+        ZoneMap zoneMap = new ZoneMap(blockSize, new int[blockNumber], new int[blockNumber]);
+        zoneMap.buildBlocks(column, 0, zoneMap.min, zoneMap.max);
+        return zoneMap;
+    }
+
+    /**
+     * Record the bounds of the blocks from firstBlock to the end of the column.
+     */
+    private void buildBlocks(Column column, int firstBlock, int[] min, int[] max) {
+        int size = column.size();
+        int[] buffer = new int[Math.min(blockSize, Math.max(size, 1))];
+
+        for (int block = firstBlock; block < min.length; block++) {
+            int from = block * blockSize;
+            int length = Math.min(blockSize, size - from);
+            column.read(from, length, buffer, 0);
+            int blockMin = Integer.MAX_VALUE;
+            int blockMax = Integer.MIN_VALUE;
+            for (int i = 0; i < length; i++) {
+                blockMin = Math.min(blockMin, buffer[i]);
+                blockMax = Math.max(blockMax, buffer[i]);
+            }
+            min[block] = blockMin;
+            max[block] = blockMax;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.nyu.database.system;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.nyu.database.parser.ConditionExpression;
+import com.nyu.database.parser.OperationExpression;
+import com.nyu.database.statistics.ColumnStatistics;
+import com.nyu.database.storage.Column;
+import com.nyu.database.storage.CompareKernel;
+import com.nyu.database.storage.Comparison;
+import com.nyu.database.storage.IntVector;
+import com.nyu.database.storage.SelectKernel;
+import com.nyu.database.util.IntHashSet;
+import com.nyu.database.util.MorselExecutor;
+
+/**
+ * Evaluate the condition of a select command on a table.
+ *
+ * Every node works on a selection vector, the ascending ids of the rows
+ * that are still candidates, and returns the ones that match. The operands
+ * of an AND are evaluated from the most selective to the least selective
+ * one, each on the rows that passed the previous ones, so only the first
+ * operand scans the whole table. The operands of an OR only look at the
+ * rows that no earlier operand matched.
+ *
+ * Big tables are evaluated morsel by morsel on the MorselExecutor.
+ */
+public class ConditionEvaluator {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final int BATCH_SIZE = 4096;
+
+    // Used for columns without statistics, the usual textbook guesses.
+    private static final double DEFAULT_SELECTIVITY = 1.0 / 3;
+    private static final double DEFAULT_EQUAL_SELECTIVITY = 0.1;
+
+    private static final String NO_COLUMN = "Error! The column name doesn't exist! "
+            + "Please recheck.";
+
+    private final Table table;
+
+    // The rows this evaluator looks at, [from, to).
+    private final int from;
+    private final int to;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public ConditionEvaluator(Table table) {
+        this(table, 0, table.getRowNumber());
+    }
+
+    private ConditionEvaluator(Table table, int from, int to) {
+        this.table = table;
+        this.from = from;
+        this.to = to;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @return the ids of the rows that satisfy the condition, in ascending order.
+     * @throws IllegalArgumentException if the condition names a column that
+     * doesn't exist or a constant that isn't an int.
+     */
+    public IntVector evaluate(ConditionExpression condition) {
+        // Every morsel is evaluated on its own, the selection vectors are
+        // ascending and so is their concatenation.
+        List<IntVector> parts = MorselExecutor.map(to - from, (start, length) ->
+                new ConditionEvaluator(table, from + start, from + start + length)
+                        .evaluate(condition, null));
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        int size = 0;
+        for (IntVector part : parts) {
+            size += part.size();
+        }
+        IntVector rows = new IntVector(Math.max(size, 1));
+        for (IntVector part : parts) {
+            rows.addAll(part.getData(), 0, part.size());
+        }
+        return rows;
+    }
+
+    /**
+     * @param candidates the rows to look at, null for all the rows in
+     * [from, to).
+     */
+    private IntVector evaluate(ConditionExpression condition, IntVector candidates) {
+        switch (condition.getType()) {
+            case AND:
+                return evaluateAnd(condition.getChildren(), candidates);
+            case OR:
+                return evaluateOr(condition.getChildren(), candidates);
+            case NOT:
+                return difference(candidates,
+                        evaluate(condition.getChildren().get(0), candidates));
+            case IN:
+                return evaluateIn(getColumn(condition.getColumn()), condition.getValues(),
+                        candidates);
+            default:
+                return evaluateComparison(condition.getComparison(), candidates);
+        }
+    }
+
+    private IntVector evaluateAnd(List<ConditionExpression> children, IntVector candidates) {
+        List<ConditionExpression> ordered = new ArrayList<>(children);
+        ordered.sort(Comparator.comparingDouble(this::estimateSelectivity));
+        IntVector rows = candidates;
+        for (ConditionExpression child : ordered) {
+            rows = evaluate(child, rows);
+            if (rows.size() == 0) {
+                break;
+            }
+        }
+        return rows;
+    }
+
+    private IntVector evaluateOr(List<ConditionExpression> children, IntVector candidates) {
+        // The operand that matches the most rows goes first, it leaves the
+        // fewest rows to the others.
+        List<ConditionExpression> ordered = new ArrayList<>(children);
+        ordered.sort(Comparator.comparingDouble(this::estimateSelectivity).reversed());
+        IntVector matched = new IntVector();
+        IntVector remaining = candidates;
+        for (ConditionExpression child : ordered) {
+            IntVector rows = evaluate(child, remaining);
+            matched = union(matched, rows);
+            remaining = difference(remaining, rows);
+            if (remaining.size() == 0) {
+                break;
+            }
+        }
+        return matched;
+    }
+
+    private IntVector evaluateComparison(OperationExpression expression, IntVector candidates) {
+        Comparison comparison = Comparison.fromOperator(expression.getOperator());
+        if (expression.isOperand1Int() && expression.isOperand2Int()) {
+            boolean result = comparison.test(parseConstant(expression.getOperand1()),
+                    parseConstant(expression.getOperand2()));
+            return result ? difference(candidates, new IntVector()) : new IntVector();
+        }
+        if (expression.isOperand1Int()) {
+            // "constant comparison column" is "column reversed comparison constant".
+            return selectByConstant(getColumn(expression.getOperand2()), comparison.reverse(),
+                    parseConstant(expression.getOperand1()), candidates);
+        }
+        if (expression.isOperand2Int()) {
+            return selectByConstant(getColumn(expression.getOperand1()), comparison,
+                    parseConstant(expression.getOperand2()), candidates);
+        }
+        return selectByColumn(getColumn(expression.getOperand1()), comparison,
+                getColumn(expression.getOperand2()), candidates);
+    }
+
+    /**
+     * @return the candidates that satisfy "column comparison constant".
+     */
+    private IntVector selectByConstant(Column column, Comparison comparison, int constant,
+                                       IntVector candidates) {
+        if (candidates == null) {
+            // Size the result from the statistics when they are at hand.
+            ColumnStatistics statistics = column.getKnownStatistics();
+            IntVector rows = statistics == null ? new IntVector()
+                    : new IntVector(1 + (int) ((to - from)
+                            * statistics.estimateSelectivity(comparison, constant)));
+            column.prunedSelect(comparison, constant, from, to - from, rows);
+            return rows;
+        }
+
+        SelectKernel kernel = SelectKernel.of(comparison, constant);
+        IntVector rows = new IntVector();
+        int[] candidateRows = candidates.getData();
+        int[] batch = new int[BATCH_SIZE];
+        int[] selected = new int[BATCH_SIZE];
+        for (int start = 0; start < candidates.size(); start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, candidates.size() - start);
+            column.readRows(candidateRows, start, n, batch);
+            int count = kernel.filter(batch, n, start, selected);
+            for (int i = 0; i < count; i++) {
+                rows.add(candidateRows[selected[i]]);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the candidates that satisfy "column1 comparison column2".
+     */
+    private IntVector selectByColumn(Column column1, Comparison comparison, Column column2,
+                                     IntVector candidates) {
+        CompareKernel kernel = CompareKernel.of(comparison);
+        IntVector rows = new IntVector();
+        int size = candidates == null ? to - from : candidates.size();
+        int[] batch1 = new int[BATCH_SIZE];
+        int[] batch2 = new int[BATCH_SIZE];
+        int[] selected = new int[BATCH_SIZE];
+        for (int start = 0; start < size; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, size - start);
+            if (candidates == null) {
+                // Scan both columns batch by batch, so that paged columns
+                // never need to be in memory as a whole.
+                column1.read(from + start, n, batch1, 0);
+                column2.read(from + start, n, batch2, 0);
+                rows.addAll(selected, 0,
+                        kernel.filter(batch1, batch2, n, from + start, selected));
+            } else {
+                column1.readRows(candidates.getData(), start, n, batch1);
+                column2.readRows(candidates.getData(), start, n, batch2);
+                int count = kernel.filter(batch1, batch2, n, start, selected);
+                for (int i = 0; i < count; i++) {
+                    rows.add(candidates.get(selected[i]));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return the candidates whose value is one of values.
+     */
+    private IntVector evaluateIn(Column column, int[] values, IntVector candidates) {
+        IntHashSet set = new IntHashSet(values.length);
+        for (int value : values) {
+            set.add(value);
+        }
+        IntVector rows = new IntVector();
+        int size = candidates == null ? to - from : candidates.size();
+        int[] batch = new int[BATCH_SIZE];
+        for (int start = 0; start < size; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, size - start);
+            if (candidates == null) {
+                column.read(from + start, n, batch, 0);
+            } else {
+                column.readRows(candidates.getData(), start, n, batch);
+            }
+            for (int i = 0; i < n; i++) {
+                if (set.contains(batch[i])) {
+                    rows.add(candidates == null ? from + start + i : candidates.get(start + i));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Estimate the fraction of the rows that satisfy a condition, from the
+     * statistics of the columns when they are known.
+     */
+    private double estimateSelectivity(ConditionExpression condition) {
+        switch (condition.getType()) {
+            case AND: {
+                double selectivity = 1;
+                for (ConditionExpression child : condition.getChildren()) {
+                    selectivity *= estimateSelectivity(child);
+                }
+                return selectivity;
+            }
+            case OR: {
+                double none = 1;
+                for (ConditionExpression child : condition.getChildren()) {
+                    none *= 1 - estimateSelectivity(child);
+                }
+                return 1 - none;
+            }
+            case NOT:
+                return 1 - estimateSelectivity(condition.getChildren().get(0));
+            case IN: {
+                Column column = table.getColumn(condition.getColumn());
+                ColumnStatistics statistics = column == null ? null : column.getKnownStatistics();
+                double each = statistics == null || statistics.getDistinctNumber() == 0
+                        ? DEFAULT_EQUAL_SELECTIVITY : 1.0 / statistics.getDistinctNumber();
+                return Math.min(1, each * condition.getValues().length);
+            }
+            default:
+                return estimateComparison(condition.getComparison());
+        }
+    }
+
+    private double estimateComparison(OperationExpression expression) {
+        Comparison comparison = Comparison.fromOperator(expression.getOperator());
+        String columnName = null;
+        String constant = null;
+        if (expression.isOperand2Int() && !expression.isOperand1Int()) {
+            columnName = expression.getOperand1();
+            constant = expression.getOperand2();
+        } else if (expression.isOperand1Int() && !expression.isOperand2Int()) {
+            columnName = expression.getOperand2();
+            constant = expression.getOperand1();
+            comparison = comparison.reverse();
+        }
+
+        Column column = columnName == null ? null : table.getColumn(columnName);
+        ColumnStatistics statistics = column == null ? null : column.getKnownStatistics();
+        if (statistics != null) {
+            try {
+                return statistics.estimateSelectivity(comparison, Integer.parseInt(constant));
+            } catch (NumberFormatException e) {
+                // The evaluation reports it.
+                return 1;
+            }
+        }
+        switch (comparison) {
+            case EQUAL:
+                return DEFAULT_EQUAL_SELECTIVITY;
+            case NOT_EQUAL:
+                return 1 - DEFAULT_EQUAL_SELECTIVITY;
+            default:
+                return DEFAULT_SELECTIVITY;
+        }
+    }
+
+    private Column getColumn(String columnName) {
+        Column column = table.getColumn(columnName);
+        if (column == null) {
+            throw new IllegalArgumentException(NO_COLUMN);
+        }
+        return column;
+    }
+
+    private static int parseConstant(String constant) {
+        try {
+            return Integer.parseInt(constant);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Error! " + constant + " is not an integer.");
+        }
+    }
+
+    /**
+     * @return the rows of candidates (all the rows in [from, to) if null)
+     * that are not in rows. Both are in ascending order, and so is the result.
+     */
+    private IntVector difference(IntVector candidates, IntVector rows) {
+        int size = candidates == null ? to - from : candidates.size();
+        IntVector result = new IntVector(Math.max(size - rows.size(), 1));
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            int row = candidates == null ? from + i : candidates.get(i);
+            while (k < rows.size() && rows.get(k) < row) {
+                k++;
+            }
+            if (k == rows.size() || rows.get(k) != row) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the rows that are in a or in b. Both are in ascending order,
+     * and so is the result.
+     */
+    private static IntVector union(IntVector a, IntVector b) {
+        IntVector result = new IntVector(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            if (j == b.size() || (i < a.size() && a.get(i) < b.get(j))) {
+                result.add(a.get(i++));
+            } else if (i == a.size() || b.get(j) < a.get(i)) {
+                result.add(b.get(j++));
+            } else {
+                result.add(a.get(i++));
+                j++;
+            }
+        }
+        return result;
+    }
+}
@@ -1,17 +1,35 @@
 package com.nyu.database.system;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.nyu.database.dao.DataReader;
+import com.nyu.database.dao.TableFile;
 //import com.nyu.database.index.hash.HashTable;
 import com.nyu.database.parser.CommandParser;
+import com.nyu.database.parser.ConditionExpression;
 import com.nyu.database.parser.OperationExpression;
+import com.nyu.database.statistics.ColumnStatistics;
+import com.nyu.database.statistics.HyperLogLog;
+import com.nyu.database.storage.ChunkedColumn;
+import com.nyu.database.storage.Column;
+import com.nyu.database.storage.Comparison;
+import com.nyu.database.storage.ExternalSort;
+import com.nyu.database.storage.IntVector;
+import com.nyu.database.storage.PageFile;
+import com.nyu.database.storage.SelectionColumn;
+import com.nyu.database.util.BoundedLongHeap;
+import com.nyu.database.util.IntBloomFilter;
+import com.nyu.database.util.IntHashSet;
+import com.nyu.database.util.IntMultiMap;
+import com.nyu.database.util.MorselExecutor;
 
 public class DataBase {
     //----------------
@@ -19,6 +37,24 @@ public class DataBase {
     //----------------
     private Map<String, Table> tables;
 
+    // Operators that scan columns read them in batches of this size.
+    private static final int BATCH_SIZE = 4096;
+
+    // Below this number of rows a parallel sort costs more than it saves.
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 16;
+
+    // Key sets of semijoins with at least this many keys no longer fit in
+    // the caches, they get a bloom filter in front of them.
+    private static final int BLOOM_FILTER_MIN_KEYS = 1 << 16;
+
+    // Sorts that would need more bytes than this spill sorted runs to disk.
+    private static final long SORT_MEMORY_BUDGET = Long.getLong("minidb.sort.budget",
+            Long.getLong("minidb.memory.budget", Runtime.getRuntime().maxMemory() / 4));
+
+    // Where spilled runs and their results are stored.
+    private static final String SPILL_DIRECTORY = System.getProperty(
+            "minidb.tmpdir", System.getProperty("java.io.tmpdir"));
+
 
     //----------------
     // Constructor(s)
@@ -57,6 +93,62 @@ public class DataBase {
             System.out.print(entry.getKey() + "\t");
         }
         System.out.println();
+        for (Map.Entry<String, Table> entry : getTables().entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue().getRowNumber()
+                    + " row(s)");
+            for (Map.Entry<String, ColumnStatistics> column
+                    : entry.getValue().getStatistics().entrySet()) {
+                System.out.println("    " + column.getKey() + ": " + column.getValue());
+            }
+        }
+    }
+
+    /**
+     * Get the statistics of every column of a table, see ColumnStatistics
+     * for the selectivity and distinct count estimates they provide.
+     *
+     * @param tableName the table's name.
+     * @return the statistics in column order, or null if there is no such table.
+     */
+    public Map<String, ColumnStatistics> getStatistics(String tableName) {
+        Table table = getTableByName(tableName);
+        if (table == null) {
+            return null;
+        }
+        return table.getStatistics();
+    }
+
+    /**
+     * Add a table to the DB, the old table with the same name is replaced.
+     * The page files that only the old table used are closed, so spilled
+     * sorts and paged imports don't pile up in the temporary directory.
+     */
+    private void putTable(String name, Table table) {
+        releasePageFiles(getTables().put(name, table));
+    }
+
+    private void removeTable(String name) {
+        releasePageFiles(getTables().remove(name));
+    }
+
+    /**
+     * Close the page files of a table that left the DB, unless another
+     * table still reads them, e.g. a select on top of it.
+     */
+    private void releasePageFiles(Table oldTable) {
+        if (oldTable == null) {
+            return;
+        }
+        Set<PageFile> files = oldTable.getPageFiles();
+        if (files.isEmpty()) {
+            return;
+        }
+        for (Table table : getTables().values()) {
+            files.removeAll(table.getPageFiles());
+        }
+        for (PageFile file : files) {
+            file.close();
+        }
     }
 
     /**
@@ -85,21 +177,52 @@ public class DataBase {
     public void inputFromFile(CommandParser parser) throws IOException {
         String tableName = parser.getTableName();
         Table table = new Table(tableName);
+
+        // Read file. A file that can't be read leaves an existing table
+        // with the same name as it is.
+        String fileName = parser.getArguments().get(0);
+        DataReader dataReader = new DataReader();
+        if (!dataReader.readFile(fileName)) {
+            return;
+        }
+        table.importFile(dataReader);
+
         if (getTables().containsKey(tableName)) {
             System.out.println("Warning! There has already existed "
                     + "a table with the same name, the old one will"
                     + "be overlapped.");
-            getTables().remove(tableName);
+            removeTable(tableName);
         }
 
-        // Read file.
-        String fileName = parser.getArguments().get(0);
-        DataReader dataReader = new DataReader();
-        dataReader.readFile(fileName);
-        table.importFile(dataReader);
-
         // Add table to the DB.
-        getTables().put(tableName, table);
+        putTable(tableName, table);
+    }
+
+    /**
+     * Append the rows of a file to the end of an existing table, the file
+     * must have the same columns as the table.
+     * e.g. append(R, sales3.txt)
+     *
+     * @param parser used for parsing command.
+     */
+    public void append(CommandParser parser) {
+        Table table = getTableByName(parser.getArguments().get(0));
+        if (table == null) {
+            System.out.println("Error! The target table doesn't exist, please "
+                    + "recheck carefully!");
+            return;
+        }
+
+        DataReader dataReader = new DataReader();
+        if (!dataReader.readFile(parser.getArguments().get(1))) {
+            // The reader has already told what is wrong with the file.
+            return;
+        }
+        try {
+            table.append(dataReader.getTableHead(), dataReader.getColumns());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error! " + e.getMessage());
+        }
     }
 
     public void outputToFile(String tableName, String fileName) throws IOException {
@@ -135,6 +258,60 @@ public class DataBase {
         }
     }
 
+    /**
+     * Save a table into a file of the native binary format.
+     * e.g. savetable(R, r.tbl)
+     *
+     * @param parser used for parsing command.
+     */
+    public void saveTable(CommandParser parser) {
+        Table table = getTableByName(parser.getArguments().get(0));
+        if (table == null) {
+            System.out.println("Error! The target table doesn't exist, please "
+                    + "recheck carefully!");
+            return;
+        }
+        String fileName = parser.getArguments().get(1);
+        try {
+            TableFile.writeFile(fileName, table.getColumnNames(),
+                    new ArrayList<>(table.getColumnData().values()));
+        } catch (IOException e) {
+            System.out.println("Error! Something is wrong when writing file "
+                    + fileName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Create a table from a file of the native binary format. The file is
+     * memory mapped, so nothing needs to be parsed.
+     * e.g. R := loadtable(r.tbl)
+     *
+     * @param parser used for parsing command.
+     */
+    public void loadTable(CommandParser parser) {
+        String tableName = parser.getTableName();
+        String fileName = parser.getArguments().get(0);
+        TableFile tableFile = new TableFile();
+        try {
+            tableFile.readFile(fileName);
+        } catch (IOException e) {
+            System.out.println("Error! Something is wrong when reading file "
+                    + fileName + ": " + e.getMessage());
+            return;
+        }
+
+        if (getTables().containsKey(tableName)) {
+            System.out.println("Warning! There has already existed "
+                    + "a table with the same name, the old one will"
+                    + "be overlapped.");
+        }
+        Table table = new Table(tableName);
+        for (int i = 0; i < tableFile.getColumns().size(); i++) {
+            table.addColumn(tableFile.getTableHead().get(i), tableFile.getColumns().get(i));
+        }
+        putTable(tableName, table);
+    }
+
     /**
      * Get certain column from the target table by column's name, and update
      * the corresponding message in the new table.
@@ -144,16 +321,13 @@ public class DataBase {
      * @param columnName the column's name
      */
     private void updateColumns(Table targetTable, Table newTable, String columnName) {
-        if (!targetTable.getColumnNames().contains(columnName)) {
+        if (!targetTable.containsColumn(columnName)) {
             System.out.println("Error! There is something wrong with the column "
                     + "name, please recheck carefully!");
             return;
         }
-        // Update column names.
-        newTable.getColumnNames().add(columnName);
-        // Update corresponding column data.
-        List<Integer> columnData = targetTable.getColumnData().get(columnName);
-        newTable.getColumnData().put(columnName, columnData);
+        // The column is immutable, so the new table can share it.
+        newTable.addColumn(columnName, targetTable.getColumn(columnName));
     }
 
     /**
@@ -178,11 +352,9 @@ public class DataBase {
             String columnName = parser.getArguments().get(i);
             updateColumns(targetTable, newTable, columnName);
         }
-        // Update row data.
-        newTable.updateRowData(null);
 
         // Add the new table to current DB.
-        getTables().put(newName, newTable);
+        putTable(newName, newTable);
     }
 
     /**
@@ -200,37 +372,37 @@ public class DataBase {
 
             // Get the target column name and data.
             String columnName = parser.getArguments().get(1);
-            List<Integer> targetColumn = getTargetColumnData(parser);
-
-
-            // Calculate the average/sum value of the column.
-            int sum = 0;
-            for (int columnValue : targetColumn) {
-                sum += columnValue;
+            Column targetColumn = getTargetColumnData(parser);
+
+            // Calculate the average/sum value of the column, morsel by morsel.
+            // Encoded columns add up their values without decoding every
+            // row, into a long.
+            long sum = 0;
+            for (long part : MorselExecutor.map(targetColumn.size(), targetColumn::sum)) {
+                sum += part;
             }
-            int avgValue = sum / targetColumn.size();
 
             // Set column name and the corresponding data.
-            // Update the row data as well.
             String newColumnName = mode + "(" + columnName + ")";
-            newTable.getColumnNames().add(newColumnName);
-            ArrayList<Integer> newColumnData = new ArrayList<>();
+            IntVector newColumnData = new IntVector(1);
 
             if (mode.equals("avg")) {
-                newColumnData.add(avgValue);
+                newColumnData.add((int) (sum / targetColumn.size()));
             } else if (mode.equals("sum")) {
-                newColumnData.add(sum);
+                newColumnData.add(Math.toIntExact(sum));
             } else {
                 System.out.println("Error! Mode can only be avg or sum!");
                 return;
             }
 
-            newTable.getColumnData().put(newColumnName, newColumnData);
-            newTable.updateRowData(null);
-            getTables().put(newName, newTable);
+            newTable.addColumn(newColumnName, newColumnData);
+            putTable(newName, newTable);
         } catch (NullPointerException e) {
             System.out.println("Error! The target table or column doesn't exist, "
                     + "please recheck carefully!");
+        } catch (ArithmeticException e) {
+            System.out.println("Error! The summation is too large for an int column, "
+                    + "or the column is empty.");
         }
     }
 
@@ -242,80 +414,77 @@ public class DataBase {
      *             summation value of the target column.
      */
     public void movAvgOrSum(CommandParser parser, String mode) {
+        movingWindow(parser, mode);
+    }
+
+    /**
+     * Calculate a moving window function of certain column, see MovingWindow.
+     * The result replaces the target column, all the other columns are
+     * shared with the target table.
+     * e.g. R := movmax(S, C1, k)
+     *
+     * @param parser used for parsing the command.
+     * @param mode one of "avg", "sum", "min", "max" or "count".
+     */
+    public void movingWindow(CommandParser parser, String mode) {
         try {
             // Get the target column name and data.
             String columnName = parser.getArguments().get(1);
-            List<Integer> targetColumn = getTargetColumnData(parser);
-
-            // Create a new table, set its column name.
-            String newName = parser.getTableName();
-            Table newTable = new Table(newName);
-
+            Column targetColumn = getTargetColumnData(parser);
             Table targetTable = getTableByName(parser.getArguments().get(0));
-            newTable.setColumnNames((List<String>) targetTable.getColumnNames().clone());
-            newTable.setColumnData((Map<String, List<Integer>>)
-                    targetTable.getColumnData().clone()
-            );
-
-            String newColumnName = "mov" + mode + "(" + columnName + ")";
-//            newTable.getColumnNames().add(newColumnName);
 
             // Get the step length.
-            int k = Integer.parseInt(parser.getArguments().get(2));
-
-            // Calculate the moving average and the moving summation.
-            ArrayList<Integer> newColumnData = new ArrayList<>();
-            if (mode.equals("avg")) {
-                for (int i = 0; i < targetColumn.size(); i++) {
-                    int tmp = 0;
-                    if (i < k - 1) {
-                        for (int j = 0; j <= i; j++) {
-                            tmp += targetColumn.get(j);
-                        }
-                        newColumnData.add(tmp / (i + 1));
-                    } else {
-                        for (int j = i - k + 1; j <= i; j++) {
-                            tmp += targetColumn.get(j);
-                        }
-                        newColumnData.add(tmp / k);
-                    }
-                }
-            } else if (mode.equals("sum")) {
-                for (int i = 0; i < targetColumn.size(); i++) {
-                    int tmp = 0;
-                    if (i < k - 1) {
-                        for (int j = 0; j <= i; j++) {
-                            tmp += targetColumn.get(j);
-                        }
-                    } else {
-                        for (int j = i - k + 1; j <= i; j++) {
-                            tmp += targetColumn.get(j);
-                        }
-                    }
-                    newColumnData.add(tmp);
-                }
+            MovingWindow window = new MovingWindow(Integer.parseInt(parser.getArguments().get(2)));
+
+            IntVector newColumnData;
+            switch (mode) {
+                case "avg":
+                    newColumnData = window.avg(targetColumn);
+                    break;
+                case "sum":
+                    newColumnData = window.sum(targetColumn);
+                    break;
+                case "min":
+                    newColumnData = window.min(targetColumn);
+                    break;
+                case "max":
+                    newColumnData = window.max(targetColumn);
+                    break;
+                case "count":
+                    newColumnData = window.count(targetColumn);
+                    break;
+                default:
+                    System.out.println("Error! Mode can only be avg, sum, min, max or count!");
+                    return;
             }
 
-            newTable.getColumnData().put(columnName, newColumnData);
-
-//            newTable.getColumnData().put(newColumnName, newColumnData);
-            newTable.updateRowData(null);
-            getTables().put(newName, newTable);
+            // Create a new table, all the columns except the target one
+            // are shared with the target table.
+            String newName = parser.getTableName();
+            Table newTable = new Table(newName);
+            newTable.setColumnData(new LinkedHashMap<>(targetTable.getColumnData()));
+            newTable.addColumn(columnName, newColumnData);
+            putTable(newName, newTable);
         } catch (NullPointerException e1) {
             System.out.println("Moving command Error! The target table or column "
                     + "doesn't exist, please recheck carefully!");
         } catch (NumberFormatException e2) {
             System.out.println("Moving command Error! The step length of the mov "
                     + "commands must be integer, please recheck carefully!");
+        } catch (IllegalArgumentException e3) {
+            System.out.println("Moving command Error! " + e3.getMessage());
+        } catch (ArithmeticException e4) {
+            System.out.println("Moving command Error! A moving sum is too large "
+                    + "for an int column.");
         }
     }
 
-    private List<Integer> getTargetColumnData(CommandParser parser) {
+    private Column getTargetColumnData(CommandParser parser) {
         String targetTableName = parser.getArguments().get(0);
         Table targetTable = getTableByName(targetTableName);
         String targetColumnName = parser.getArguments().get(1);
         assert targetTable != null;
-        return targetTable.getColumnData().get(targetColumnName);
+        return targetTable.getColumn(targetColumnName);
     }
 
     /**
@@ -327,21 +496,12 @@ public class DataBase {
         try {
             // Get essential message.
             String newName = parser.getTableName();
-            Table newTable = new Table(newName);
             String targetTable1Name = parser.getArguments().get(0);
             String targetTable2Name = parser.getArguments().get(1);
             Table targetTable1 = getTableByName(targetTable1Name);
             Table targetTable2 = getTableByName(targetTable2Name);
-
-            // Update the column names of the new table.
             assert targetTable1 != null;
             assert targetTable2 != null;
-            for (String name : targetTable1.getColumnNames()) {
-                newTable.getColumnNames().add(targetTable1Name + "_" + name);
-            }
-            for (String name : targetTable2.getColumnNames()) {
-                newTable.getColumnNames().add(targetTable2Name + "_" + name);
-            }
 
             // Get the join condition.
             OperationExpression condition = parser.getOperationExpression();
@@ -349,242 +509,560 @@ public class DataBase {
             String column1 = condition.getOperand1().split("\\.")[1];
             String table2 = condition.getOperand2().split("\\.")[0];
             String column2 = condition.getOperand2().split("\\.")[1];
-            String operator = condition.getOperator();
-            List<Integer> columnData1 = getTableByName(table1).getColumnData().get(column1);
-            List<Integer> columnData2 = getTableByName(table2).getColumnData().get(column2);
-
-            // Parse the operator
-            List<List<Integer>> newRowData = new ArrayList<>();
-            List<List<Integer>> oldRowData1 = targetTable1.getRowData();
-            List<List<Integer>> oldRowData2 = targetTable2.getRowData();
-
-            // Get cartesian product of the two tables.
-            for (int i = 0; i < columnData1.size(); i++) {
-                for (int j = 0; j < columnData2.size(); j++) {
-                    switch (operator) {
-                        case "<":
-                            if (columnData1.get(i) < columnData2.get(j)) {
-                                updateNewRowData(newRowData, oldRowData1, oldRowData2, i, j);
-                            }
-                            break;
-                        case ">":
-                            if (columnData1.get(i) > columnData2.get(j)) {
-                                updateNewRowData(newRowData, oldRowData1,
-                                        oldRowData2, i, j);
-                            }
-                            break;
-                        case "=":
-                            if (columnData1.get(i) == columnData2.get(j)) {
-                                updateNewRowData(newRowData, oldRowData1,
-                                        oldRowData2, i, j);
-                            }
-                            break;
-                        case "<=":
-                            if (columnData1.get(i) <= columnData2.get(i)) {
-                                updateNewRowData(newRowData, oldRowData1,
-                                        oldRowData2, i, j);
-                            }
-                            break;
-                        case ">=":
-                            if (columnData1.get(i) >= columnData2.get(i)) {
-                                updateNewRowData(newRowData, oldRowData1,
-                                        oldRowData2, i, j);
-                            }
-                            break;
-                        case "!=":
-                            if (columnData1.get(i) != columnData2.get(i)) {
-                                updateNewRowData(newRowData, oldRowData1,
-                                        oldRowData2, i, j);
-                            }
-                            break;
-                        default:
-                            System.out.println("Error! The operator can only be '>', '<', "
-                                    + "'=', '>=', '<=', or '!='. Please recheck.");
-                            return;
-                    }
-                }
+            Comparison comparison = Comparison.fromOperator(condition.getOperator());
+
+            // The condition may name the second table first, e.g.
+            // join(R, S, S.C2 = R.C1), turn it around so that column 1
+            // belongs to the first table.
+            if (table1.equals(targetTable2Name) && table2.equals(targetTable1Name)
+                    && !table1.equals(table2)) {
+                String table = table1;
+                table1 = table2;
+                table2 = table;
+                String column = column1;
+                column1 = column2;
+                column2 = column;
+                comparison = comparison.reverse();
+            }
+            Column joinColumn1 = getTableByName(table1).getColumn(column1);
+            Column joinColumn2 = getTableByName(table2).getColumn(column2);
+
+            // The row ids of the matched pairs.
+            IntVector[] pairs;
+            switch (comparison) {
+                case EQUAL:
+                    pairs = hashJoin(joinColumn1, joinColumn2);
+                    break;
+                case NOT_EQUAL:
+                    pairs = notEqualJoin(joinColumn1, joinColumn2);
+                    break;
+                default:
+                    pairs = bandJoin(joinColumn1, joinColumn2, comparison);
+                    break;
             }
 
-            newTable.setRowData(newRowData);
-            newTable.updateColumnData();
-            getTables().put(newName, newTable);
+            // The new table is a view of the matched rows of both tables.
+            Table newTable = new Table(newName);
+            addSelectedColumns(targetTable1, newTable, targetTable1Name + "_", pairs[0]);
+            addSelectedColumns(targetTable2, newTable, targetTable2Name + "_", pairs[1]);
+            putTable(newName, newTable);
         } catch (NullPointerException e) {
             System.out.println("Join Error! No such table, please recheck.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
         }
     }
 
     /**
-     * First organize the ith row of oldRowData1 and the jth row of oldRowData2
-     * into a new row, and then add the new row to the newRowData.
+     * Keep the rows of R that have a match in S, e.g.
+     * semijoin(R, S, R.C1 = S.C2). A row of R is kept once however many
+     * rows of S it matches, and no combined row is built.
      *
-     * @param newRowData the result new rows.
-     * @param oldRowData1 target rows1
-     * @param oldRowData2 target rows2
-     * @param i column index of target rows1
-     * @param j column index of target row2
+     * @param parser used for parsing the command.
      */
-    private void updateNewRowData(
-            List<List<Integer>> newRowData, List<List<Integer>> oldRowData1,
-            List<List<Integer>> oldRowData2, int i, int j) {
-        ArrayList<Integer> currentRow = new ArrayList<>();
-        currentRow.addAll(oldRowData1.get(i));
-        currentRow.addAll(oldRowData2.get(j));
-        newRowData.add(currentRow);
+    public void semijoin(CommandParser parser) {
+        filterByMatch(parser, true, "Semijoin");
     }
 
-
     /**
-     * Select certain columns from the target table under the restriction of
-     * some conditions.
+     * Keep the rows of R that have no match in S, e.g.
+     * antijoin(R, S, R.C1 = S.C2).
+     *
      * @param parser used for parsing the command.
      */
-    public void select(CommandParser parser) {
-        Table targetTable = getTableByName(parser.getArguments().get(0));
+    public void antijoin(CommandParser parser) {
+        filterByMatch(parser, false, "Antijoin");
+    }
 
-        // Check if the target table exists.
-        if (targetTable == null) {
-            throw new IllegalArgumentException(
-                    "The target table doesn't exist, please recheck carefully!");
+    /**
+     * The new table holds the rows of R, in the order of R, that have a
+     * match in S if matching is true, or no match otherwise. The condition
+     * may name either table first, like in join.
+     */
+    private void filterByMatch(CommandParser parser, boolean matching, String commandName) {
+        try {
+            String newName = parser.getTableName();
+            String targetTable1Name = parser.getArguments().get(0);
+            String targetTable2Name = parser.getArguments().get(1);
+            Table targetTable1 = getTableByName(targetTable1Name);
+            Table targetTable2 = getTableByName(targetTable2Name);
+            if (targetTable1 == null || targetTable2 == null) {
+                throw new IllegalArgumentException(commandName
+                        + " Error! No such table, please recheck.");
+            }
+
+            OperationExpression condition = parser.getOperationExpression();
+            String[] operand1 = condition.getOperand1().split("\\.");
+            String[] operand2 = condition.getOperand2().split("\\.");
+            Comparison comparison = Comparison.fromOperator(condition.getOperator());
+            if (operand1.length != 2 || operand2.length != 2) {
+                throw new IllegalArgumentException(commandName + " Error! The columns in "
+                        + "the condition must be prefixed with their tables, please recheck.");
+            }
+            if (operand1[0].equals(targetTable2Name) && operand2[0].equals(targetTable1Name)
+                    && !operand1[0].equals(operand2[0])) {
+                String[] operand = operand1;
+                operand1 = operand2;
+                operand2 = operand;
+                comparison = comparison.reverse();
+            }
+            if (!operand1[0].equals(targetTable1Name) || !operand2[0].equals(targetTable2Name)) {
+                throw new IllegalArgumentException(commandName + " Error! The condition must "
+                        + "compare a column of " + targetTable1Name + " with a column of "
+                        + targetTable2Name + ", please recheck.");
+            }
+            checkColumn(targetTable1, operand1[1]);
+            checkColumn(targetTable2, operand2[1]);
+            Column column1 = targetTable1.getColumn(operand1[1]);
+            Column column2 = targetTable2.getColumn(operand2[1]);
+
+            IntVector rows = comparison == Comparison.EQUAL
+                    ? probeKeySet(column1, column2, matching)
+                    : compareWithRange(column1, column2, comparison, matching);
+            putTable(newName, gatherRows(targetTable1, newName, rows));
+        } catch (NullPointerException e) {
+            System.out.println(commandName + " Error! Something is wrong with the "
+                    + "condition, please recheck.");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
         }
+    }
 
-        // Create a new table and copy all the column names.
-        String newName = parser.getTableName();
-        Table newTable = new Table(newName);
-        newTable.setColumnNames(targetTable.getColumnNames());
-
-        // Get the select conditions.
-        OperationExpression condition = parser.getOperationExpression();
-        // Operand 1 is an integer
-        if (condition.isOperand1Int()) {
-            int constant = Integer.parseInt(condition.getOperand1());
-            String columnName = condition.getOperand2();
-            selectByConstant(targetTable, newTable, columnName,
-                    condition.getOperator(), constant);
-        } else if (condition.isOperand2Int()) {
-            // Operand 2 is an integer
-            int constant = Integer.parseInt(condition.getOperand2());
-            String columnName = condition.getOperand1();
-            selectByConstant(targetTable, newTable, columnName,
-                    condition.getOperator(), constant);
-        } else {
-            // Operand 1 and operand 2 are two column names
-            String column1 = condition.getOperand1();
-            String column2 = condition.getOperand2();
-            selectByColumn(targetTable, newTable, column1,
-                    condition.getOperator(), column2);
+    /**
+     * The distinct values of column2 go into a hash set, then column1 is
+     * streamed through it morsel by morsel, so the cost is one pass over
+     * each column. Values outside [min, max] of column2 are rejected
+     * without a lookup. When the set is too big for the caches, a bloom
+     * filter of a byte per value is checked before it, so most of the rows
+     * without a match never touch the set.
+     *
+     * @return the ascending row ids of column1 whose value is in column2 if
+     * matching is true, or isn't otherwise.
+     */
+    private IntVector probeKeySet(Column column1, Column column2, boolean matching) {
+        IntHashSet keys = new IntHashSet(
+                estimateGroupNumber(Arrays.asList(column2), column2.size()));
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int[] batch = new int[BATCH_SIZE];
+        for (int start = 0; start < column2.size(); start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, column2.size() - start);
+            column2.read(start, n, batch, 0);
+            for (int i = 0; i < n; i++) {
+                keys.add(batch[i]);
+                min = Math.min(min, batch[i]);
+                max = Math.max(max, batch[i]);
+            }
+        }
+        IntBloomFilter filter = null;
+        if (keys.size() >= BLOOM_FILTER_MIN_KEYS) {
+            filter = new IntBloomFilter(keys.size());
+            for (int key : keys.toArray()) {
+                filter.add(key);
+            }
+        }
+
+        int keyMin = min;
+        int keyMax = max;
+        IntBloomFilter keyFilter = filter;
+        List<IntVector> parts = MorselExecutor.map(column1.size(), (from, length) -> {
+            IntVector rows = new IntVector();
+            int[] values = new int[Math.min(BATCH_SIZE, length)];
+            for (int start = from; start < from + length; start += BATCH_SIZE) {
+                int n = Math.min(BATCH_SIZE, from + length - start);
+                column1.read(start, n, values, 0);
+                for (int i = 0; i < n; i++) {
+                    int value = values[i];
+                    boolean found = value >= keyMin && value <= keyMax
+                            && (keyFilter == null || keyFilter.mightContain(value))
+                            && keys.contains(value);
+                    if (found == matching) {
+                        rows.add(start + i);
+                    }
+                }
+            }
+            return rows;
+        });
+        IntVector rows = new IntVector();
+        for (IntVector part : parts) {
+            rows.addAll(part);
         }
-        getTables().put(newName, newTable);
+        return rows;
     }
 
-    private void selectByConstant(Table targetTable, Table newTable,
-                                  String columnName, String operator,
-                                  int constant)
-            throws NullPointerException {
-        try {
-            List<Integer> columnData = targetTable.getColumnData().get(columnName);
-            List<List<Integer>> oldRowData = targetTable.getRowData();
-            List<List<Integer>> newRowData = new ArrayList<>();
-
-            for (int i = 0; i < columnData.size(); i++) {
-                switch (operator) {
-                    case "<":
-                        if (columnData.get(i) < constant) {
-                            newRowData.add(oldRowData.get(i));
-                        }
-                        break;
-                    case ">":
-                        if (columnData.get(i) > constant) {
-                            newRowData.add(oldRowData.get(i));
-                        }
-                        break;
-                    case "=":
-//                        System.out.println("No index.");
-                        if (columnData.get(i) == constant) {
-                            newRowData.add(oldRowData.get(i));
-                        }
-                        break;
-                    case "<=":
-                        if (columnData.get(i) <= constant) {
-                            newRowData.add(oldRowData.get(i));
-                        }
-                        break;
-                    case ">=":
-                        if (columnData.get(i) >= constant) {
-                            newRowData.add(oldRowData.get(i));
-                        }
-                        break;
-                    case "!=":
-                        if (columnData.get(i) != constant) {
-                            newRowData.add(oldRowData.get(i));
-                        }
-                        break;
-                    default:
-                        throw new IllegalArgumentException(
-                                "Error! The operator can only be '>', '<', '=', "
-                                        + "'>=', '<=', or '!='. Please recheck.");
+    /**
+     * Whether "value1 comparison value2" holds for some row of column2 only
+     * depends on the min and the max of column2, e.g. R.C1 < S.C2 holds for
+     * some row of S iff R.C1 < max(S.C2), and R.C1 != S.C2 holds for every
+     * R.C1 unless all the values of S.C2 are the same. So the rows are
+     * found by a select on column1, which can use its zone map.
+     *
+     * @return the ascending row ids of column1 that have a match in column2
+     * if matching is true, or that have none otherwise.
+     */
+    private IntVector compareWithRange(Column column1, Column column2,
+                                       Comparison comparison, boolean matching) {
+        IntVector rows = new IntVector();
+        if (column2.size() == 0) {
+            if (!matching) {
+                rows.addRange(0, column1.size());
+            }
+            return rows;
+        }
+
+        ColumnStatistics statistics = column2.getStatistics();
+        int constant;
+        switch (comparison) {
+            case LESS:
+            case LESS_EQUAL:
+                constant = statistics.getMax();
+                break;
+            case GREATER:
+            case GREATER_EQUAL:
+                constant = statistics.getMin();
+                break;
+            default:
+                if (statistics.getMin() < statistics.getMax()) {
+                    if (matching) {
+                        rows.addRange(0, column1.size());
+                    }
+                    return rows;
+                }
+                constant = statistics.getMin();
+                break;
+        }
+        column1.select(matching ? comparison : comparison.negate(), constant, rows);
+        return rows;
+    }
+
+    /**
+     * Find the pairs of rows with equal values. A hash table is built on the
+     * smaller column and probed with the other one, so the cost is linear in
+     * the size of the inputs plus the number of pairs.
+     *
+     * @return the row ids of the pairs, {rows of column1, rows of column2}.
+     * The pairs come in the order of a nested loop over column1 then column2.
+     */
+    private IntVector[] hashJoin(Column column1, Column column2) {
+        boolean buildFirst = column1.size() < column2.size();
+        Column build = buildFirst ? column1 : column2;
+        Column probe = buildFirst ? column2 : column1;
+        IntMultiMap map = buildMultiMap(build);
+
+        IntVector buildRows = new IntVector();
+        IntVector probeRows = new IntVector();
+        int[] batch = new int[BATCH_SIZE];
+        for (int start = 0; start < probe.size(); start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, probe.size() - start);
+            probe.read(start, n, batch, 0);
+            for (int i = 0; i < n; i++) {
+                for (int row = map.first(batch[i]); row >= 0; row = map.next(row)) {
+                    buildRows.add(row);
+                    probeRows.add(start + i);
                 }
             }
-            newTable.setRowData(newRowData);
-            newTable.updateColumnData();
-        } catch (NullPointerException e) {
-            System.out.println("Error! The column name doesn't exist! Please recheck.");
         }
+
+        if (!buildFirst) {
+            return new IntVector[]{probeRows, buildRows};
+        }
+        return orderByFirstRows(buildRows, probeRows, build.size());
     }
 
-    private void selectByColumn(Table targetTable, Table newTable,
-                                  String column1, String operator,
-                                  String column2) throws NullPointerException {
-        try {
-            List<Integer> columnData1 = targetTable.getColumnData().get(column1);
-            List<Integer> columnData2 = targetTable.getColumnData().get(column2);
-            List<List<Integer>> oldRowData = targetTable.getRowData();
-            List<List<Integer>> newRowData = new ArrayList<>();
-
-            assert columnData1.size() == columnData2.size();
-
-            for (int i = 0; i < columnData1.size(); i++) {
-                switch (operator) {
-                    case "<":
-                        if (columnData1.get(i) < columnData2.get(i)) {
-                            newRowData.add(oldRowData.get(i));
-                        }
-                        break;
-                    case ">":
-                        if (columnData1.get(i) > columnData2.get(i)) {
-                            newRowData.add(oldRowData.get(i));
-                        }
-                        break;
-                    case "=":
-                        if (columnData1.get(i).equals(columnData2.get(i))) {
-                            newRowData.add(oldRowData.get(i));
-                        }
-                        break;
-                    case "<=":
-                        if (columnData1.get(i) <= columnData2.get(i)) {
-                            newRowData.add(oldRowData.get(i));
-                        }
+    /**
+     * Find the pairs of rows with different values, i.e. every pair but the
+     * ones of the equality join. For each row of column1 the rows of column2
+     * with the same value are skipped while walking column2, so the cost is
+     * linear in the number of pairs of the cartesian product.
+     *
+     * @return the row ids of the pairs, {rows of column1, rows of column2},
+     * in the order of a nested loop over column1 then column2.
+     */
+    private IntVector[] notEqualJoin(Column column1, Column column2) {
+        IntMultiMap map = buildMultiMap(column2);
+        int size2 = column2.size();
+        IntVector rows1 = new IntVector();
+        IntVector rows2 = new IntVector();
+
+        int[] batch = new int[BATCH_SIZE];
+        for (int start = 0; start < column1.size(); start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, column1.size() - start);
+            column1.read(start, n, batch, 0);
+            for (int i = 0; i < n; i++) {
+                // The equal rows come in ascending order, as does j.
+                int equalRow = map.first(batch[i]);
+                for (int j = 0; j < size2; j++) {
+                    if (j == equalRow) {
+                        equalRow = map.next(equalRow);
+                    } else {
+                        rows1.add(start + i);
+                        rows2.add(j);
+                    }
+                }
+            }
+        }
+        return new IntVector[]{rows1, rows2};
+    }
+
+    /**
+     * Find the pairs of rows such that "value1 comparison value2" holds,
+     * for one of '<', '<=', '>' or '>='. Column1 is sorted once, then the
+     * rows of column1 that match a value of column2 form one contiguous
+     * range of the sorted order, which is found by binary search. The cost
+     * is O((n + m) log n) plus the number of pairs.
+     *
+     * @return the row ids of the pairs, {rows of column1, rows of column2},
+     * in the order of a nested loop over column1 then column2.
+     */
+    private IntVector[] bandJoin(Column column1, Column column2, Comparison comparison) {
+        long[] sorted = sortByValue(column1);
+        int size1 = sorted.length;
+        IntVector rows1 = new IntVector();
+        IntVector rows2 = new IntVector();
+
+        int[] batch = new int[BATCH_SIZE];
+        for (int start = 0; start < column2.size(); start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, column2.size() - start);
+            column2.read(start, n, batch, 0);
+            for (int j = 0; j < n; j++) {
+                int value = batch[j];
+                int from;
+                int to;
+                switch (comparison) {
+                    case LESS:
+                        from = 0;
+                        to = lowerBound(sorted, value);
                         break;
-                    case ">=":
-                        if (columnData1.get(i) >= columnData2.get(i)) {
-                            newRowData.add(oldRowData.get(i));
-                        }
+                    case LESS_EQUAL:
+                        from = 0;
+                        to = upperBound(sorted, value);
                         break;
-                    case "!=":
-                        if (!columnData1.get(i).equals(columnData2.get(i))) {
-                            newRowData.add(oldRowData.get(i));
-                        }
+                    case GREATER:
+                        from = upperBound(sorted, value);
+                        to = size1;
                         break;
                     default:
-                        throw new IllegalArgumentException(
-                                "Error! The operator can only be '>', '<', '=', "
-                                        + "'>=', '<=', or '!='. Please recheck.");
+                        from = lowerBound(sorted, value);
+                        to = size1;
+                        break;
+                }
+                for (int k = from; k < to; k++) {
+                    rows1.add((int) sorted[k]);
+                    rows2.add(start + j);
                 }
             }
-            newTable.setRowData(newRowData);
-            newTable.updateColumnData();
-        } catch (NullPointerException e) {
-            System.out.println("Error! The column name doesn't exist! Please recheck.");
         }
+        return orderByFirstRows(rows1, rows2, size1);
+    }
+
+    /**
+     * @return a hash table from the values of the column to their row ids.
+     */
+    private static IntMultiMap buildMultiMap(Column column) {
+        IntMultiMap map = new IntMultiMap(column.size());
+        int[] batch = new int[BATCH_SIZE];
+        for (int start = 0; start < column.size(); start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, column.size() - start);
+            column.read(start, n, batch, 0);
+            for (int i = 0; i < n; i++) {
+                map.put(batch[i], start + i);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Sort the rows of a column by value. Every row is packed into one long,
+     * the value in the high half and the row id in the low half, so that a
+     * primitive sort orders them by value and then by row id. Large columns
+     * are sorted on all the cores.
+     *
+     * @return the packed rows in ascending order, (int) gives the row id back.
+     */
+    private static long[] sortByValue(Column column) {
+        long[] packed = new long[column.size()];
+        int[] batch = new int[BATCH_SIZE];
+        for (int start = 0; start < packed.length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, packed.length - start);
+            column.read(start, n, batch, 0);
+            for (int i = 0; i < n; i++) {
+                packed[start + i] = ((long) batch[i] << 32) | (start + i);
+            }
+        }
+        if (packed.length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(packed);
+        } else {
+            Arrays.sort(packed);
+        }
+        return packed;
+    }
+
+    /**
+     * Find the k first rows of a column in value order without sorting it.
+     * The rows are packed like in sortByValue and go through a bounded
+     * heap, so it takes O(n log k) time and O(k) memory. Descending order
+     * packs ~value, which reverses the order of the values but keeps ties
+     * in row order.
+     *
+     * @return the row ids of the k first rows, in order.
+     */
+    private static IntVector topRows(Column column, int k, boolean descending) {
+        BoundedLongHeap heap = new BoundedLongHeap(Math.min(k, column.size()));
+        int[] batch = new int[BATCH_SIZE];
+        for (int start = 0; start < column.size(); start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, column.size() - start);
+            column.read(start, n, batch, 0);
+            for (int i = 0; i < n; i++) {
+                int value = descending ? ~batch[i] : batch[i];
+                heap.offer(((long) value << 32) | (start + i));
+            }
+        }
+        long[] sorted = heap.toSortedArray();
+        IntVector rows = new IntVector(Math.max(sorted.length, 1));
+        for (long packed : sorted) {
+            rows.add((int) packed);
+        }
+        return rows;
+    }
+
+    /**
+     * @return the first position in sorted whose value is at least value.
+     */
+    private static int lowerBound(long[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if ((int) (sorted[middle] >> 32) < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the first position in sorted whose value is larger than value.
+     */
+    private static int upperBound(long[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if ((int) (sorted[middle] >> 32) <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reorder pairs of row ids by the first row id, keeping the order of
+     * the pairs that share it. It is a counting sort, so the cost is linear.
+     *
+     * @param rows1 the first row id of every pair, all less than rowNumber1.
+     * @param rows2 the second row id of every pair.
+     * @param rowNumber1 the number of rows of the first table.
+     * @return the reordered pairs, {rows1, rows2}.
+     */
+    private static IntVector[] orderByFirstRows(IntVector rows1, IntVector rows2, int rowNumber1) {
+        int pairNumber = rows1.size();
+        int[] starts = new int[rowNumber1 + 1];
+        for (int k = 0; k < pairNumber; k++) {
+            starts[rows1.get(k) + 1]++;
+        }
+        for (int row = 0; row < rowNumber1; row++) {
+            starts[row + 1] += starts[row];
+        }
+        int[] sorted1 = new int[pairNumber];
+        int[] sorted2 = new int[pairNumber];
+        for (int k = 0; k < pairNumber; k++) {
+            int position = starts[rows1.get(k)]++;
+            sorted1[position] = rows1.get(k);
+            sorted2[position] = rows2.get(k);
+        }
+        return new IntVector[]{new IntVector(sorted1, pairNumber),
+                new IntVector(sorted2, pairNumber)};
+    }
+
+    /**
+     * Build a new table that contains the given rows of the target table.
+     * The new table only keeps row ids, the values are not copied.
+     *
+     * @param targetTable the target table.
+     * @param newName the name of the new table.
+     * @param rows the row ids to keep, in the order of the new table.
+     * @return the new table.
+     */
+    private Table gatherRows(Table targetTable, String newName, IntVector rows) {
+        Table newTable = new Table(newName);
+        addSelectedColumns(targetTable, newTable, "", rows);
+        return newTable;
+    }
+
+    /**
+     * Add a view of the given rows of every column of the target table
+     * to the new table.
+     *
+     * @param targetTable the target table.
+     * @param newTable the table to add the columns to.
+     * @param prefix prepended to the column names.
+     * @param rows the row ids to keep, in the order of the new table.
+     */
+    private void addSelectedColumns(Table targetTable, Table newTable,
+                                    String prefix, IntVector rows) {
+        // The columns of a derived table usually share one row id vector,
+        // translate it once so that the new columns share one as well.
+        Map<int[], int[]> composedRows = new IdentityHashMap<>();
+        for (Map.Entry<String, Column> entry : targetTable.getColumnData().entrySet()) {
+            Column column = entry.getValue();
+            Column newColumn;
+            if (column instanceof SelectionColumn) {
+                SelectionColumn view = (SelectionColumn) column;
+                int[] baseRows = composedRows.computeIfAbsent(
+                        view.getRows(), key -> view.compose(rows));
+                newColumn = new SelectionColumn(view.getBase(), baseRows, rows.size());
+            } else {
+                newColumn = column.gather(rows);
+            }
+            newTable.addColumn(prefix + entry.getKey(), newColumn);
+        }
+    }
+
+
+    /**
+     * Select certain columns from the target table under the restriction of
+     * some conditions.
+     * @param parser used for parsing the command.
+     */
+    public void select(CommandParser parser) {
+        Table targetTable = getTableByName(parser.getArguments().get(0));
+
+        // Check if the target table exists.
+        if (targetTable == null) {
+            throw new IllegalArgumentException(
+                    "The target table doesn't exist, please recheck carefully!");
+        }
+
+        String newName = parser.getTableName();
+        ConditionExpression condition = parser.getCondition();
+        // The parser has already told what is wrong with the condition.
+        if (condition == null) {
+            return;
+        }
+
+        IntVector selectedRows;
+        try {
+            selectedRows = new ConditionEvaluator(targetTable).evaluate(condition);
+        } catch (IllegalArgumentException e) {
+            // Keep the column names even if the condition is broken.
+            System.out.println(e.getMessage());
+            selectedRows = new IntVector();
+        }
+        putTable(newName, gatherRows(targetTable, newName, selectedRows));
     }
 
     /**
@@ -600,43 +1078,134 @@ public class DataBase {
             Table targetTable = getTableByName(parser.getArguments().get(0));
 
             assert targetTable != null;
-            List<Integer> targetColumn = targetTable.getColumnData().get(columnName);
-
-            // Create a new table, set its column names.
+            Column targetColumn = targetTable.getColumn(columnName);
             String newName = parser.getTableName();
-            Table newTable = new Table(newName);
-            newTable.setColumnNames(targetTable.getColumnNames());
 
-            // Selection sort in the natural order.
-            ArrayList<ArrayList<Integer>> tmpRows =
-                    (ArrayList<ArrayList<Integer>>) targetTable.getRowData().clone();
-            ArrayList<Integer> tmpColumn = (ArrayList<Integer>) targetColumn.clone();
-            while (!tmpColumn.isEmpty()) {
-                int minIndex = tmpColumn.indexOf(getMin(tmpColumn));
-                newTable.getRowData().add(tmpRows.get(minIndex));
-                tmpColumn.remove(minIndex);
-                tmpRows.remove(minIndex);
+            // "sort(S, C1, limit k)" only keeps the k first rows, it doesn't
+            // need to sort the others.
+            if (parser.getArguments().size() > 2) {
+                String limit = parser.getArguments().get(2);
+                if (!limit.startsWith("limit")) {
+                    System.out.println("Sort command Error! The third argument can only be "
+                            + "\"limit k\", please recheck carefully!");
+                    return;
+                }
+                int k = parseLimit(limit.substring("limit".length()));
+                putTable(newName, gatherRows(targetTable, newName,
+                        topRows(targetColumn, k, false)));
+                return;
             }
 
-            // Update corresponding column data.
-            newTable.updateColumnData();
+            // An in-memory sort needs a long and a row id per row.
+            if (12L * targetColumn.size() > SORT_MEMORY_BUDGET) {
+                externalSort(targetTable, newName, columnName);
+                return;
+            }
+
+            // Rows are ordered by value and then by row id, so the sort is
+            // stable. The new table is a permutation view of the target one.
+            long[] sorted = sortByValue(targetColumn);
+            IntVector order = new IntVector(sorted.length);
+            for (long packed : sorted) {
+                order.add((int) packed);
+            }
 
             // Add the new table to the current DB.
-            getTables().put(parser.getTableName(), newTable);
+            putTable(newName, gatherRows(targetTable, newName, order));
         } catch (NullPointerException e) {
             System.out.println("Sort command Error! The target tables "
                     + "don't exist, please recheck carefully!");
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Keep the k rows with the smallest values of a column, or the largest
+     * ones with "desc", in that order, like "R := topk(S, C1, k [, desc])".
+     * Ties keep the order of S. It is "sort(S, C1)" followed by taking the
+     * k first rows, but takes O(n log k) time and O(k) memory.
+     *
+     * On the result of sumgroup or agg it gives the top k groups, like
+     * "topk(G, sum(qty), 100, desc)".
+     *
+     * @param parser used for parsing the command.
+     */
+    public void topk(CommandParser parser) {
+        try {
+            if (parser.getArguments().size() < 3 || parser.getArguments().size() > 4) {
+                throw new IllegalArgumentException("TopK command Error! The command should be "
+                        + "like \"topk(S, C1, k [, desc])\", please recheck carefully!");
+            }
+            Table targetTable = getTableByName(parser.getArguments().get(0));
+            if (targetTable == null) {
+                throw new IllegalArgumentException("TopK command Error! The target table "
+                        + "doesn't exist, please recheck carefully!");
+            }
+            String columnName = parser.getArguments().get(1);
+            checkColumn(targetTable, columnName);
+            int k = parseLimit(parser.getArguments().get(2));
+
+            boolean descending = false;
+            if (parser.getArguments().size() == 4) {
+                String order = parser.getArguments().get(3);
+                if (!order.equals("desc") && !order.equals("asc")) {
+                    throw new IllegalArgumentException("TopK command Error! The order can "
+                            + "only be asc or desc, please recheck carefully!");
+                }
+                descending = order.equals("desc");
+            }
+
+            String newName = parser.getTableName();
+            putTable(newName, gatherRows(targetTable, newName,
+                    topRows(targetTable.getColumn(columnName), k, descending)));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of rows to keep.
+     * @throws IllegalArgumentException if it isn't a non-negative int.
+     */
+    private static int parseLimit(String limit) {
+        try {
+            int k = Integer.parseInt(limit);
+            if (k >= 0) {
+                return k;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below.
         }
+        throw new IllegalArgumentException("Error! The number of rows to keep must be "
+                + "a non-negative integer, please recheck carefully!");
     }
 
-    private int getMin(ArrayList<Integer> a) {
-        double min = Double.POSITIVE_INFINITY;
-        for (int data : a) {
-            if (data < min) {
-                min = data;
+    /**
+     * Sort a table that is too large to be sorted in memory. The rows are
+     * sorted in runs that are spilled to disk and merged into a new table
+     * of paged columns.
+     *
+     * @param targetTable the table to sort.
+     * @param newName the name of the sorted table.
+     * @param columnName the column to sort by.
+     */
+    private void externalSort(Table targetTable, String newName, String columnName) {
+        List<String> columnNames = targetTable.getColumnNames();
+        ExternalSort externalSort = new ExternalSort(new File(SPILL_DIRECTORY), SORT_MEMORY_BUDGET);
+        try {
+            List<Column> sorted = externalSort.sort(
+                    new ArrayList<>(targetTable.getColumnData().values()),
+                    columnNames.indexOf(columnName));
+            Table newTable = new Table(newName);
+            for (int i = 0; i < columnNames.size(); i++) {
+                newTable.addColumn(columnNames.get(i), sorted.get(i));
             }
+            putTable(newName, newTable);
+        } catch (IOException e) {
+            System.out.println("Sort command Error! Something is wrong when spilling "
+                    + "to disk: " + e.getMessage());
         }
-        return (int) min;
     }
 
     /**
@@ -651,25 +1220,27 @@ public class DataBase {
             Table targetTable2 = getTableByName(parser.getArguments().get(1));
             assert targetTable1 != null;
             assert targetTable2 != null;
+            if (targetTable1.getColumnNumber() != targetTable2.getColumnNumber()) {
+                System.out.println("Concat command Error! The target tables "
+                        + "don't have the same number of columns, please "
+                        + "recheck carefully!");
+                return;
+            }
 
-            // Generate a new table and initialize its table name and
-            // the column names.
+            // Generate a new table, the column names come from the first table
+            // and the columns of both tables are matched by position. Each
+            // new column chains the chunks of the two input columns, so the
+            // cost doesn't depend on the number of rows.
             Table newTable = new Table(parser.getTableName());
-            newTable.setColumnNames(targetTable1.getColumnNames());
-
-            // Append rows into the new table.
-            for (List<Integer> row : targetTable1.getRowData()) {
-                newTable.getRowData().add(row);
-            }
-            for (List<Integer> row : targetTable2.getRowData()) {
-                newTable.getRowData().add(row);
+            List<Column> columns2 = new ArrayList<>(targetTable2.getColumnData().values());
+            int i = 0;
+            for (Map.Entry<String, Column> entry : targetTable1.getColumnData().entrySet()) {
+                newTable.addColumn(entry.getKey(),
+                        ChunkedColumn.concat(entry.getValue(), columns2.get(i++)));
             }
 
-            // Update corresponding columns.
-            newTable.updateColumnData();
-
             // Add the new table to the current DB.
-            getTables().put(parser.getTableName(), newTable);
+            putTable(parser.getTableName(), newTable);
         } catch (NullPointerException e) {
             System.out.println("Concat command Error! The target tables "
                     + "don't exist, please recheck carefully!");
@@ -677,9 +1248,11 @@ public class DataBase {
     }
 
     /**
+     * Calculate the summation or average value of the target column
+     * for each group of Clist.
      *
-     * @param parser
-     * @param mode
+     * @param parser used for parsing the command
+     * @param mode either "avg" or "sum"
      * @throws NullPointerException
      */
     public void sumOrAvgGroup(CommandParser parser, String mode) throws NullPointerException {
@@ -689,87 +1262,302 @@ public class DataBase {
             Table targetTable = getTableByName(parser.getArguments().get(0));
 
             assert targetTable != null;
-            int targetColumnIndex = targetTable.getColumnNames().indexOf(columnName);
-            List<Integer> targetColumnData = targetTable.getColumnData().get(columnName);
-
-            // Get the column messages that will be grouped.
-            Table tmpGroupTable = new Table();
+            Column targetColumnData = targetTable.getColumn(columnName);
 
+            // Get the columns that will be grouped.
+            List<String> groupColumnNames = new ArrayList<>();
+            List<Column> groupColumns = new ArrayList<>();
             for (int i = 2; i < parser.getArguments().size(); i++) {
-
                 String groupColumnName = parser.getArguments().get(i);
-                List<Integer> groupColumnData = targetTable.getColumnData().get(groupColumnName);
+                groupColumnNames.add(groupColumnName);
+                groupColumns.add(targetTable.getColumn(groupColumnName));
+            }
 
-                tmpGroupTable.getColumnNames().add(groupColumnName);
-                tmpGroupTable.getColumnData().put(groupColumnName, groupColumnData);
+            // The groups keep the order they first appear in.
+            int rowNumber = targetColumnData.size();
+            List<Column> valueColumns = new ArrayList<>();
+            valueColumns.add(targetColumnData);
+            HashAggregation aggregation = HashAggregation.aggregate(groupColumns, valueColumns,
+                    rowNumber, estimateGroupNumber(groupColumns, rowNumber));
+
+            // Create the new columns. (CList + sum/avg)
+            List<IntVector> newGroupColumns = new ArrayList<>();
+            for (int i = 0; i < groupColumnNames.size(); i++) {
+                newGroupColumns.add(aggregation.keyColumn(i));
             }
+            IntVector newValueColumn = aggregation.resultColumn(
+                    HashAggregation.Function.fromName(mode), 0);
 
-            // Update the row data of the temp group table.
-            tmpGroupTable.updateRowData(null);
+            Table newTable = new Table(parser.getTableName());
+            for (int i = 0; i < groupColumnNames.size(); i++) {
+                newTable.addColumn(groupColumnNames.get(i), newGroupColumns.get(i));
+            }
+            newTable.addColumn(mode + "(" + columnName + ")", newValueColumn);
 
-            // To organize the data into groups, we use LinkedHashSet to
-            // eliminate the duplicate column data.
-            Set<List<Integer>> groupsWithoutDuplicate = new LinkedHashSet<>(tmpGroupTable.getRowData());
+            // Add the new table to the current DB.
+            putTable(parser.getTableName(), newTable);
 
-            // The HashMap represents for each group and the corresponding target column values.
-            Map<List<Integer>, List<Integer>> groupDivision = new LinkedHashMap<>();
-            for (List<Integer> group : groupsWithoutDuplicate) {
-                groupDivision.put(group, new ArrayList<>());
-            }
+        } catch (NullPointerException e) {
+            System.out.println("SumGroup or AvgGroup Error!");
+        } catch (ArithmeticException e) {
+            System.out.println("SumGroup Error! A summation is too large for an int column.");
+        }
+
+    }
 
-            for (List<Integer> row : targetTable.getRowData()) {
-                List<Integer> currentRowGroup = new ArrayList<>();
+    /**
+     * Compute several aggregates in one scan, over the whole table or per
+     * group, like "R := agg(S, sum(qty), avg(qty), count(), min(time),
+     * max(time), by storeid, pricerange)". The result has the group columns
+     * first, then one column per aggregate, named as written. The groups
+     * are in the order they first appear.
+     *
+     * @param parser used for parsing the command.
+     */
+    public void agg(CommandParser parser) {
+        try {
+            Table targetTable = getTableByName(parser.getArguments().get(0));
+            if (targetTable == null) {
+                throw new IllegalArgumentException("Error! The target table doesn't exist, "
+                        + "please recheck carefully!");
+            }
 
-                // For current row, we organize the certain columns' data into a group.
-                for (String groupColumnName : tmpGroupTable.getColumnNames()) {
-                    int columnIndex = targetTable.getColumnNames().indexOf(groupColumnName);
-                    currentRowGroup.add(row.get(columnIndex));
+            // Split the arguments into the aggregates and the group columns,
+            // which start at the one prefixed with "by".
+            List<HashAggregation.Function> functions = new ArrayList<>();
+            List<String> aggregateNames = new ArrayList<>();
+            List<Integer> valueIndexes = new ArrayList<>();
+            List<String> valueColumnNames = new ArrayList<>();
+            List<String> groupColumnNames = new ArrayList<>();
+            for (int i = 1; i < parser.getArguments().size(); i++) {
+                String argument = parser.getArguments().get(i);
+                if (groupColumnNames.isEmpty() && argument.contains("(")) {
+                    int open = argument.indexOf('(');
+                    if (!argument.endsWith(")")) {
+                        throw new IllegalArgumentException("Error! Something is wrong with "
+                                + argument + ", please recheck carefully.");
+                    }
+                    HashAggregation.Function function = HashAggregation.Function.fromName(
+                            argument.substring(0, open));
+                    String columnName = argument.substring(open + 1, argument.length() - 1);
+                    if (function != HashAggregation.Function.COUNT || !columnName.isEmpty()) {
+                        checkColumn(targetTable, columnName);
+                    }
+                    // Every value column is read once, however many aggregates use it.
+                    if (!columnName.isEmpty() && !valueColumnNames.contains(columnName)) {
+                        valueColumnNames.add(columnName);
+                    }
+                    functions.add(function);
+                    aggregateNames.add(argument);
+                    valueIndexes.add(Math.max(valueColumnNames.indexOf(columnName), 0));
+                } else {
+                    if (groupColumnNames.isEmpty()) {
+                        if (!argument.startsWith("by")) {
+                            throw new IllegalArgumentException("Error! The group columns must "
+                                    + "follow \"by\", please recheck carefully.");
+                        }
+                        argument = argument.substring(2);
+                    }
+                    checkColumn(targetTable, argument);
+                    groupColumnNames.add(argument);
                 }
+            }
+            if (functions.isEmpty()) {
+                throw new IllegalArgumentException("Error! There is no aggregate, "
+                        + "please recheck carefully.");
+            }
 
-                // The currentRowGroup is a key, and we add corresponding column value
-                // to the right group.
-                groupDivision.get(currentRowGroup).add(row.get(targetColumnIndex));
+            List<Column> groupColumns = new ArrayList<>();
+            for (String groupColumnName : groupColumnNames) {
+                groupColumns.add(targetTable.getColumn(groupColumnName));
+            }
+            List<Column> valueColumns = new ArrayList<>();
+            for (String valueColumnName : valueColumnNames) {
+                valueColumns.add(targetTable.getColumn(valueColumnName));
             }
+            int rowNumber = targetTable.getRowNumber();
+            HashAggregation aggregation = HashAggregation.aggregate(groupColumns, valueColumns,
+                    rowNumber, estimateGroupNumber(groupColumns, rowNumber));
 
-            // Create a new table.
             Table newTable = new Table(parser.getTableName());
+            for (int i = 0; i < groupColumnNames.size(); i++) {
+                newTable.addColumn(groupColumnNames.get(i), aggregation.keyColumn(i));
+            }
+            for (int i = 0; i < functions.size(); i++) {
+                newTable.addColumn(aggregateNames.get(i),
+                        aggregation.resultColumn(functions.get(i), valueIndexes.get(i)));
+            }
+            putTable(parser.getTableName(), newTable);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (ArithmeticException e) {
+            System.out.println("Agg Error! A summation is too large for an int column.");
+        }
+    }
+
+    /**
+     * Keep one row of every distinct combination of the values of Clist,
+     * e.g. distinct(S, C1, C2), with the columns of Clist only. The rows
+     * come in the order the combinations first appear in S.
+     *
+     * @param parser used for parsing the command.
+     */
+    public void distinct(CommandParser parser) {
+        try {
+            Table targetTable = getTableByName(parser.getArguments().get(0));
+            if (targetTable == null) {
+                throw new IllegalArgumentException("Error! The target table doesn't exist, "
+                        + "please recheck carefully!");
+            }
+            List<String> columnNames = parser.getArguments().subList(1,
+                    parser.getArguments().size());
+            if (columnNames.isEmpty()) {
+                throw new IllegalArgumentException("Error! Distinct needs at least one "
+                        + "column, please recheck carefully.");
+            }
+            List<Column> columns = new ArrayList<>();
+            for (String columnName : columnNames) {
+                checkColumn(targetTable, columnName);
+                columns.add(targetTable.getColumn(columnName));
+            }
+
+            // The combinations are the groups of an aggregation without values.
+            int rowNumber = targetTable.getRowNumber();
+            HashAggregation aggregation = HashAggregation.aggregate(columns,
+                    new ArrayList<>(), rowNumber, estimateGroupNumber(columns, rowNumber));
+
+            Table newTable = new Table(parser.getTableName());
+            for (int i = 0; i < columnNames.size(); i++) {
+                newTable.addColumn(columnNames.get(i), aggregation.keyColumn(i));
+            }
+            putTable(parser.getTableName(), newTable);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-            // Set the column name. (CList + sum/avg)
-            for (String name : tmpGroupTable.getColumnNames())
-                newTable.getColumnNames().add(name);
-            String firstColumnName = mode + "(" + columnName + ")";
-            newTable.getColumnNames().add(firstColumnName);
-
-            // Set the data.
-            int count = 0;
-            for (List<Integer> group : groupDivision.keySet()) {
-                ArrayList<Integer> tmpRow = (ArrayList<Integer>) group.clone();
-                if (mode.equals("sum")) {
-                    tmpRow.add(sumArrayList(groupDivision.get(group)));
-                } else if (mode.equals("avg")) {
-                    int length = groupDivision.get(group).size();
-                    tmpRow.add(sumArrayList(groupDivision.get(group)) / length);
+    /**
+     * Count the distinct values of a column exactly, e.g.
+     * countdistinct(S, C1). The values go into a primitive hash set, so
+     * the memory grows with the number of distinct values.
+     *
+     * @param parser used for parsing the command.
+     */
+    public void countDistinct(CommandParser parser) {
+        try {
+            Column column = getSingleColumn(parser, "CountDistinct");
+            IntHashSet values = new IntHashSet(
+                    estimateGroupNumber(Arrays.asList(column), column.size()));
+            int[] batch = new int[BATCH_SIZE];
+            for (int start = 0; start < column.size(); start += BATCH_SIZE) {
+                int n = Math.min(BATCH_SIZE, column.size() - start);
+                column.read(start, n, batch, 0);
+                for (int i = 0; i < n; i++) {
+                    values.add(batch[i]);
                 }
-                newTable.getRowData().add(tmpRow);
             }
+            addSingleValueTable(parser, "countdistinct", values.size());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-            // Add the new table to the current DB.
-            getTables().put(parser.getTableName(), newTable);
+    /**
+     * Estimate the number of distinct values of a column, e.g.
+     * approxcountdistinct(S, C1), within a few percent and with a few
+     * kilobytes of memory however many values there are.
+     *
+     * If the statistics of the column are known, their sketch already
+     * holds the answer. Otherwise every task of the MorselExecutor builds
+     * a HyperLogLog sketch of its morsels, and the sketches are merged.
+     *
+     * @param parser used for parsing the command.
+     */
+    public void approxCountDistinct(CommandParser parser) {
+        try {
+            Column column = getSingleColumn(parser, "ApproxCountDistinct");
+            ColumnStatistics statistics = column.getKnownStatistics();
+            long estimate;
+            if (statistics != null) {
+                estimate = statistics.getDistinctNumber();
+            } else {
+                List<HyperLogLog> sketches = MorselExecutor.fold(column.size(), HyperLogLog::new,
+                        (sketch, from, length) -> {
+                            int[] batch = new int[Math.min(BATCH_SIZE, length)];
+                            for (int start = from; start < from + length; start += BATCH_SIZE) {
+                                int n = Math.min(BATCH_SIZE, from + length - start);
+                                column.read(start, n, batch, 0);
+                                for (int i = 0; i < n; i++) {
+                                    sketch.add(batch[i]);
+                                }
+                            }
+                        });
+                HyperLogLog sketch = sketches.get(0);
+                for (int i = 1; i < sketches.size(); i++) {
+                    sketch.merge(sketches.get(i));
+                }
+                estimate = Math.min(sketch.estimate(), column.size());
+            }
+            addSingleValueTable(parser, "approxcountdistinct", (int) estimate);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-        } catch (NullPointerException e) {
-            System.out.println("SumGroup or AvgGroup Error!");
+    /**
+     * @return the column of a command of the form command(S, C1).
+     * @throws IllegalArgumentException if the table or the column doesn't exist.
+     */
+    private Column getSingleColumn(CommandParser parser, String commandName) {
+        if (parser.getArguments().size() != 2) {
+            throw new IllegalArgumentException(commandName + " Error! The command should be "
+                    + "like " + commandName.toLowerCase() + "(S, C1), please recheck carefully.");
         }
+        Table targetTable = getTableByName(parser.getArguments().get(0));
+        if (targetTable == null) {
+            throw new IllegalArgumentException("Error! The target table doesn't exist, "
+                    + "please recheck carefully!");
+        }
+        checkColumn(targetTable, parser.getArguments().get(1));
+        return targetTable.getColumn(parser.getArguments().get(1));
+    }
 
+    /**
+     * Add the single row table of the result of function(S, C1).
+     */
+    private void addSingleValueTable(CommandParser parser, String function, int value) {
+        IntVector newColumnData = new IntVector(1);
+        newColumnData.add(value);
+        Table newTable = new Table(parser.getTableName());
+        newTable.addColumn(function + "(" + parser.getArguments().get(1) + ")", newColumnData);
+        putTable(parser.getTableName(), newTable);
     }
 
-    private int sumArrayList(ArrayList<Integer> array) {
-        int result = 0;
-        for (int i : array) {
-            result += i;
+    private static void checkColumn(Table table, String columnName) {
+        if (!table.containsColumn(columnName)) {
+            throw new IllegalArgumentException("Error! The column " + columnName
+                    + " doesn't exist! Please recheck.");
         }
-        return result;
     }
 
+    /**
+     * Estimate the number of groups from the distinct counts of the group
+     * columns. Columns without statistics are not scanned for it, the map
+     * just starts small and grows.
+     *
+     * @return the estimate, never more than the number of rows.
+     */
+    private int estimateGroupNumber(List<Column> groupColumns, int rowNumber) {
+        long groupNumber = 1;
+        for (Column column : groupColumns) {
+            ColumnStatistics statistics = column.getKnownStatistics();
+            if (statistics == null) {
+                return Math.min(rowNumber, 16);
+            }
+            groupNumber = Math.min(groupNumber * statistics.getDistinctNumber(), rowNumber);
+        }
+        return (int) groupNumber;
+    }
 
 //    // TODO: Implementation of hash index.
 //    public void hash(CommandParser parser, HashTable hashTable) throws
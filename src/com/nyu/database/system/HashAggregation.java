@@ -0,0 +1,379 @@
+package com.nyu.database.system;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.nyu.database.storage.Column;
+import com.nyu.database.storage.IntVector;
+import com.nyu.database.util.GroupHashTable;
+import com.nyu.database.util.MorselExecutor;
+
+/**
+ * Hash aggregation of some value columns grouped by other columns.
+ *
+ * The groups live in a GroupHashTable, which gives them dense ids in the
+ * order they first appear. Every group has a count, and for every value
+ * column a summation, a minimum and a maximum, all in primitive arrays
+ * indexed by the group id. One scan gives every aggregate of every value
+ * column, a row costs one probe, and a group costs a few words whatever its
+ * number of rows. The summations are longs, so they don't overflow on the
+ * way, only a result that doesn't fit in an int is an error.
+ *
+ * Without group columns there is a single group, the whole table.
+ *
+ * Big inputs are aggregated in parallel, see aggregate.
+ */
+public class HashAggregation {
+
+    /**
+     * The aggregates that can be asked for.
+     */
+    public enum Function {
+        SUM, AVG, COUNT, MIN, MAX;
+
+        /**
+         * @param name the name in a command, like "sum".
+         * @throws IllegalArgumentException if there is no such aggregate.
+         */
+        public static Function fromName(String name) {
+            for (Function function : values()) {
+                if (function.name().equalsIgnoreCase(name)) {
+                    return function;
+                }
+            }
+            throw new IllegalArgumentException("Error! The aggregate can only be sum, avg, "
+                    + "count, min or max. Please recheck.");
+        }
+    }
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final int BATCH_SIZE = 4096;
+
+    private final GroupHashTable groups;
+    private final int valueWidth;
+
+    // Group -> the number of its rows and the first of them.
+    private long[] counts;
+    private int[] firstRows;
+
+    // Group * valueWidth + c -> the summation, the minimum and the maximum
+    // of the c-th value column in the group.
+    private long[] sums;
+    private int[] mins;
+    private int[] maxs;
+
+    // Holds the key being looked up.
+    private final int[] key;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param keyWidth the number of group columns.
+     * @param valueWidth the number of value columns.
+     * @param expectedGroups the number of groups to make room for.
+     */
+    public HashAggregation(int keyWidth, int valueWidth, int expectedGroups) {
+        int capacity = Math.max(expectedGroups, 4);
+        this.groups = new GroupHashTable(keyWidth, expectedGroups);
+        this.valueWidth = valueWidth;
+        this.counts = new long[capacity];
+        this.firstRows = new int[capacity];
+        this.sums = new long[capacity * valueWidth];
+        this.mins = new int[capacity * valueWidth];
+        this.maxs = new int[capacity * valueWidth];
+        this.key = new int[keyWidth];
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int getGroupNumber() {
+        return groups.getGroupNumber();
+    }
+
+    public long getCount(int group) {
+        return counts[group];
+    }
+
+    public long getSum(int group, int c) {
+        return sums[group * valueWidth + c];
+    }
+
+    public int getFirstRow(int group) {
+        return firstRows[group];
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Aggregate the value columns by the group columns. The groups come out
+     * in the order they first appear in, however many threads did the work.
+     *
+     * Big inputs are aggregated morsel by morsel on the MorselExecutor,
+     * every task in a table of its own, so the tasks share nothing. The
+     * groups of the tasks' tables are then split into partitions by their
+     * hash, and every partition is merged by one task. A group lands in one
+     * partition whichever task saw it, so the merge needs no lock either.
+     * At last the groups are put back in the order of their first rows.
+     *
+     * Without group columns there is always exactly one group, the whole
+     * input, even if it has no row.
+     *
+     * @param rowNumber the number of rows of the columns.
+     * @param expectedGroups the number of groups to make room for.
+     */
+    public static HashAggregation aggregate(List<Column> groupColumns, List<Column> valueColumns,
+                                            int rowNumber, int expectedGroups) {
+        int keyWidth = groupColumns.size();
+        int valueWidth = valueColumns.size();
+        if (!MorselExecutor.isParallel(rowNumber)) {
+            HashAggregation aggregation = new HashAggregation(keyWidth, valueWidth,
+                    expectedGroups);
+            aggregation.add(groupColumns, valueColumns, 0, rowNumber);
+            if (keyWidth == 0 && aggregation.getGroupNumber() == 0) {
+                aggregation.findOrAdd(aggregation.key, 0);
+            }
+            return aggregation;
+        }
+
+        // Pre-aggregate the morsels, every task in a table of its own.
+        List<HashAggregation> locals = MorselExecutor.fold(rowNumber,
+                () -> new HashAggregation(keyWidth, valueWidth,
+                        Math.min(expectedGroups, MorselExecutor.MORSEL_SIZE)),
+                (local, from, length) -> local.add(groupColumns, valueColumns, from, length));
+
+        // A few partitions per task, so one big partition doesn't hold the
+        // others up.
+        int partitionBits = 32 - Integer.numberOfLeadingZeros(4 * locals.size() - 1);
+        List<Callable<int[][]>> partitioners = new ArrayList<>();
+        for (HashAggregation local : locals) {
+            partitioners.add(() -> local.partition(partitionBits));
+        }
+        List<int[][]> partitionsOfLocals = MorselExecutor.invokeAll(partitioners);
+
+        // Merge the partitions.
+        List<Callable<HashAggregation>> mergers = new ArrayList<>();
+        for (int p = 0; p < (1 << partitionBits); p++) {
+            final int partition = p;
+            mergers.add(() -> {
+                int groupNumber = 0;
+                for (int[][] partitions : partitionsOfLocals) {
+                    groupNumber += partitions[partition].length;
+                }
+                HashAggregation merged = new HashAggregation(keyWidth, valueWidth, groupNumber);
+                for (int i = 0; i < locals.size(); i++) {
+                    for (int group : partitionsOfLocals.get(i)[partition]) {
+                        merged.merge(locals.get(i), group);
+                    }
+                }
+                return merged;
+            });
+        }
+        return inFirstRowOrder(MorselExecutor.invokeAll(mergers), keyWidth, valueWidth);
+    }
+
+    /**
+     * @return one aggregation with the groups of all the parts, in the
+     * order of their first rows. Every group is in exactly one part.
+     */
+    private static HashAggregation inFirstRowOrder(List<HashAggregation> parts, int keyWidth,
+                                                   int valueWidth) {
+        int groupNumber = 0;
+        for (HashAggregation part : parts) {
+            groupNumber += part.getGroupNumber();
+        }
+        // (first row << 32) | index, the first rows are distinct.
+        long[] order = new long[groupNumber];
+        int[] partOfIndex = new int[groupNumber];
+        int[] groupOfIndex = new int[groupNumber];
+        int index = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            HashAggregation part = parts.get(i);
+            for (int group = 0; group < part.getGroupNumber(); group++) {
+                order[index] = ((long) part.firstRows[group] << 32) | index;
+                partOfIndex[index] = i;
+                groupOfIndex[index] = group;
+                index++;
+            }
+        }
+        Arrays.parallelSort(order);
+
+        HashAggregation result = new HashAggregation(keyWidth, valueWidth, groupNumber);
+        for (long entry : order) {
+            index = (int) entry;
+            result.merge(parts.get(partOfIndex[index]), groupOfIndex[index]);
+        }
+        return result;
+    }
+
+    /**
+     * Split the groups by the top bits of the hash of their keys.
+     *
+     * @return partition -> the groups that fall into it.
+     */
+    private int[][] partition(int partitionBits) {
+        int[] partitionOfGroup = new int[getGroupNumber()];
+        int[] sizes = new int[1 << partitionBits];
+        for (int group = 0; group < getGroupNumber(); group++) {
+            groups.copyKey(group, key);
+            int partition = GroupHashTable.hash(key) >>> (32 - partitionBits);
+            partitionOfGroup[group] = partition;
+            sizes[partition]++;
+        }
+        int[][] partitions = new int[sizes.length][];
+        for (int p = 0; p < sizes.length; p++) {
+            partitions[p] = new int[sizes[p]];
+            sizes[p] = 0;
+        }
+        for (int group = 0; group < getGroupNumber(); group++) {
+            int partition = partitionOfGroup[group];
+            partitions[partition][sizes[partition]++] = group;
+        }
+        return partitions;
+    }
+
+    /**
+     * Aggregate rows [from, from + length) of the value columns by the group
+     * columns. The columns are read batch by batch, so only the groups need
+     * to fit in memory.
+     */
+    public void add(List<Column> groupColumns, List<Column> valueColumns, int from, int length) {
+        int keyWidth = groupColumns.size();
+        int batchSize = Math.min(length, BATCH_SIZE);
+        int[] groupBatch = new int[batchSize];
+        int[] valueBatch = new int[batchSize];
+        int[][] keyBatches = new int[keyWidth][batchSize];
+        for (int start = from; start < from + length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, from + length - start);
+
+            // Find the group of every row of the batch.
+            for (int j = 0; j < keyWidth; j++) {
+                groupColumns.get(j).read(start, n, keyBatches[j], 0);
+            }
+            if (keyWidth == 0) {
+                Arrays.fill(groupBatch, 0, n, findOrAdd(key, start));
+            } else {
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < keyWidth; j++) {
+                        key[j] = keyBatches[j][i];
+                    }
+                    groupBatch[i] = findOrAdd(key, start + i);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                counts[groupBatch[i]]++;
+            }
+
+            // Then add the batch up one value column at a time.
+            for (int c = 0; c < valueWidth; c++) {
+                valueColumns.get(c).read(start, n, valueBatch, 0);
+                for (int i = 0; i < n; i++) {
+                    int slot = groupBatch[i] * valueWidth + c;
+                    int value = valueBatch[i];
+                    sums[slot] += value;
+                    mins[slot] = Math.min(mins[slot], value);
+                    maxs[slot] = Math.max(maxs[slot], value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a group of another aggregation to the current one.
+     */
+    private void merge(HashAggregation other, int otherGroup) {
+        other.groups.copyKey(otherGroup, key);
+        int group = findOrAdd(key, other.firstRows[otherGroup]);
+        counts[group] += other.counts[otherGroup];
+        firstRows[group] = Math.min(firstRows[group], other.firstRows[otherGroup]);
+        for (int c = 0; c < valueWidth; c++) {
+            int slot = group * valueWidth + c;
+            int otherSlot = otherGroup * valueWidth + c;
+            sums[slot] += other.sums[otherSlot];
+            mins[slot] = Math.min(mins[slot], other.mins[otherSlot]);
+            maxs[slot] = Math.max(maxs[slot], other.maxs[otherSlot]);
+        }
+    }
+
+    /**
+     * @param row the row the key comes from, it is the first row of the
+     * group if the group is new.
+     * @return the group of the key.
+     */
+    private int findOrAdd(int[] key, int row) {
+        int groupNumber = groups.getGroupNumber();
+        int group = groups.findOrAdd(key);
+        if (group == groupNumber) {
+            if (group == counts.length) {
+                counts = Arrays.copyOf(counts, counts.length * 2);
+                firstRows = Arrays.copyOf(firstRows, firstRows.length * 2);
+                sums = Arrays.copyOf(sums, sums.length * 2);
+                mins = Arrays.copyOf(mins, mins.length * 2);
+                maxs = Arrays.copyOf(maxs, maxs.length * 2);
+            }
+            firstRows[group] = row;
+            for (int c = 0; c < valueWidth; c++) {
+                mins[group * valueWidth + c] = Integer.MAX_VALUE;
+                maxs[group * valueWidth + c] = Integer.MIN_VALUE;
+            }
+        }
+        return group;
+    }
+
+    /**
+     * @return the j-th group column, one row per group.
+     */
+    public IntVector keyColumn(int j) {
+        IntVector column = new IntVector(Math.max(getGroupNumber(), 1));
+        for (int group = 0; group < getGroupNumber(); group++) {
+            column.add(groups.getKey(group, j));
+        }
+        return column;
+    }
+
+    /**
+     * @param function the aggregate.
+     * @param c the value column, ignored by COUNT.
+     * @return the aggregate of every group. Averages are rounded toward zero,
+     * the average, min and max of a group without rows are 0.
+     * @throws ArithmeticException if a summation doesn't fit in an int.
+     */
+    public IntVector resultColumn(Function function, int c) {
+        IntVector column = new IntVector(Math.max(getGroupNumber(), 1));
+        for (int group = 0; group < getGroupNumber(); group++) {
+            int slot = group * valueWidth + c;
+            if (counts[group] == 0 && function != Function.SUM && function != Function.COUNT) {
+                column.add(0);
+                continue;
+            }
+            switch (function) {
+                case SUM:
+                    column.add(Math.toIntExact(sums[slot]));
+                    break;
+                case AVG:
+                    column.add((int) (sums[slot] / counts[group]));
+                    break;
+                case COUNT:
+                    column.add(Math.toIntExact(counts[group]));
+                    break;
+                case MIN:
+                    column.add(mins[slot]);
+                    break;
+                default:
+                    column.add(maxs[slot]);
+                    break;
+            }
+        }
+        return column;
+    }
+}
@@ -0,0 +1,199 @@
+package com.nyu.database.system;
+
+import java.util.List;
+
+import com.nyu.database.storage.Column;
+import com.nyu.database.storage.IntVector;
+import com.nyu.database.util.MorselExecutor;
+
+/**
+ * Moving window functions over a column. The window of row i is made of
+ * rows [max(0, i - k + 1), i], so the first k - 1 windows are shorter.
+ *
+ * The cost is O(n) whatever k is: sums add the row that enters the window
+ * and subtract the one that leaves it, min and max keep a monotonic deque
+ * of the rows that can still become the extreme. Sums of big columns are
+ * computed morsel by morsel on all the cores, see sumOrAvg.
+ */
+public class MovingWindow {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final int BATCH_SIZE = 4096;
+
+    private final int k;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param k the length of the window.
+     * @throws IllegalArgumentException if k isn't positive.
+     */
+    public MovingWindow(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("The step length of the mov commands "
+                    + "must be positive, please recheck carefully!");
+        }
+        this.k = k;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @return the moving sum of every row.
+     * @throws ArithmeticException if a sum doesn't fit in an int.
+     */
+    public IntVector sum(Column column) {
+        return sumOrAvg(column, false);
+    }
+
+    /**
+     * @return the moving average of every row, rounded toward zero. The sums
+     * are kept in a long, so large values don't overflow.
+     */
+    public IntVector avg(Column column) {
+        return sumOrAvg(column, true);
+    }
+
+    /**
+     * @return the number of rows in the window of every row.
+     */
+    public IntVector count(Column column) {
+        IntVector result = new IntVector(column.size());
+        for (int i = 0; i < column.size(); i++) {
+            result.add(Math.min(i + 1, k));
+        }
+        return result;
+    }
+
+    public IntVector min(Column column) {
+        return extreme(column, true);
+    }
+
+    public IntVector max(Column column) {
+        return extreme(column, false);
+    }
+
+    /**
+     * The window of row i holds P(i + 1) - P(max(0, i + 1 - k)), where P(j)
+     * is the summation of the rows before j. Big columns are scanned twice
+     * on the MorselExecutor: once for the totals of the morsels, whose
+     * prefix sums give P at the start of every morsel, then for the windows,
+     * every morsel on its own from a running sum seeded with P.
+     */
+    private IntVector sumOrAvg(Column column, boolean average) {
+        int size = column.size();
+        int[] result = new int[size];
+        if (!MorselExecutor.isParallel(size)) {
+            windowSums(column, null, 0, size, average, result);
+            return new IntVector(result, size);
+        }
+
+        List<Long> totals = MorselExecutor.map(size, column::sum);
+        long[] prefix = new long[totals.size() + 1];
+        for (int m = 0; m < totals.size(); m++) {
+            prefix[m + 1] = prefix[m] + totals.get(m);
+        }
+        MorselExecutor.map(size, (from, length) -> {
+            windowSums(column, prefix, from, length, average, result);
+            return null;
+        });
+        return new IntVector(result, size);
+    }
+
+    /**
+     * Write the moving sums or averages of rows [from, from + length) to
+     * result.
+     *
+     * @param prefix the summation of the rows before every morsel, only
+     * read if from isn't 0.
+     */
+    private void windowSums(Column column, long[] prefix, int from, int length,
+                            boolean average, int[] result) {
+        // The summation of the window of row from - 1.
+        long sum = from == 0 ? 0 : prefixSum(column, prefix, from)
+                - prefixSum(column, prefix, Math.max(0, from - k));
+
+        int[] batch = new int[Math.min(BATCH_SIZE, Math.max(length, 1))];
+        int[] leaving = new int[batch.length];
+        for (int start = from; start < from + length; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, from + length - start);
+            column.read(start, n, batch, 0);
+            // Row i - k leaves the window when row i enters it, the first
+            // skip rows of the batch have no row leaving.
+            int skip = Math.max(0, Math.min(n, k - start));
+            if (skip < n) {
+                column.read(start + skip - k, n - skip, leaving, skip);
+            }
+            for (int b = 0; b < n; b++) {
+                int i = start + b;
+                sum += batch[b];
+                if (b >= skip) {
+                    sum -= leaving[b];
+                }
+                result[i] = average ? (int) (sum / Math.min(i + 1, k)) : Math.toIntExact(sum);
+            }
+        }
+    }
+
+    /**
+     * @return the summation of the rows before row.
+     */
+    private static long prefixSum(Column column, long[] prefix, int row) {
+        int morsel = row / MorselExecutor.MORSEL_SIZE;
+        int start = morsel * MorselExecutor.MORSEL_SIZE;
+        return prefix[morsel] + column.sum(start, row - start);
+    }
+
+    /**
+     * The deque holds the rows of the window whose value is strictly better
+     * than the value of every later row, from the oldest to the newest, so
+     * its head is the extreme of the window.
+     */
+    private IntVector extreme(Column column, boolean minimum) {
+        int size = column.size();
+        IntVector result = new IntVector(size);
+        int capacity = Math.min(k, Math.max(size, 1));
+        int[] dequeRows = new int[capacity];
+        int[] dequeValues = new int[capacity];
+        int head = 0;
+        int length = 0;
+
+        int[] batch = new int[Math.min(BATCH_SIZE, Math.max(size, 1))];
+        for (int start = 0; start < size; start += BATCH_SIZE) {
+            int n = Math.min(BATCH_SIZE, size - start);
+            column.read(start, n, batch, 0);
+            for (int b = 0; b < n; b++) {
+                int i = start + b;
+                int value = batch[b];
+
+                // Drop the row that left the window.
+                if (length > 0 && dequeRows[head] <= i - k) {
+                    head = (head + 1) % capacity;
+                    length--;
+                }
+                // Drop the rows that can't be the extreme any more.
+                while (length > 0) {
+                    int last = dequeValues[(head + length - 1) % capacity];
+                    if (minimum ? last < value : last > value) {
+                        break;
+                    }
+                    length--;
+                }
+                int tail = (head + length) % capacity;
+                dequeRows[tail] = i;
+                dequeValues[tail] = value;
+                length++;
+
+                result.add(dequeValues[head]);
+            }
+        }
+        return result;
+    }
+}
@@ -1,12 +1,22 @@
 package com.nyu.database.system;
 
 import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import com.nyu.database.dao.DataReader;
 import com.nyu.database.dao.DataWriter;
+import com.nyu.database.statistics.ColumnStatistics;
+import com.nyu.database.storage.AppendableColumn;
+import com.nyu.database.storage.Column;
+import com.nyu.database.storage.ColumnEncoder;
+import com.nyu.database.storage.IntVector;
+import com.nyu.database.storage.PageFile;
 
 public class Table {
 
@@ -15,12 +25,12 @@ public class Table {
     //----------------
 
     private String tableName;
-    private List<String> columnNames;
-    private List<List<Integer>> rowData;
 
+    // The columns are the only copy of the data, rows are just a view
+    // on top of them (see getRowData()).
     // To make sure that we can get ordered items,
     // we need to use LinkedHashMap instead of HashMap.
-    private LinkedHashMap<String, List<Integer>> columnData;
+    private LinkedHashMap<String, Column> columnData;
 
     //----------------
     // Constructors
@@ -28,15 +38,11 @@ public class Table {
 
     public Table() {
         this.tableName = null;
-        this.columnNames = new ArrayList<>();
-        this.rowData = new ArrayList<>();
         this.columnData = new LinkedHashMap<>();
     }
 
     public Table(String tableName) {
         this.tableName = tableName;
-        this.columnNames = new ArrayList<>();
-        this.rowData = new ArrayList<>();
         this.columnData = new LinkedHashMap<>();
     }
 
@@ -44,137 +50,194 @@ public class Table {
     // Accessors
     //----------------
 
-    public List<String> getColumnNames() {
-        return this.columnNames;
-    }
-
-    public void setColumnNames(List<String> columnNames) {
-        this.columnNames = columnNames;
+    public String getTableName() {
+        return this.tableName;
     }
 
-    public List<List<Integer>> getRowData() {
-        return this.rowData;
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
     }
 
-    public void setRowData(List<List<Integer>> rowData) {
-        this.rowData = rowData;
+    /**
+     * @return the column names in their original order. The returned list is
+     * a copy, use addColumn() to change the schema of the table.
+     */
+    public List<String> getColumnNames() {
+        return new ArrayList<>(this.columnData.keySet());
     }
 
-    public LinkedHashMap<String, List<Integer>> getColumnData() {
+    public LinkedHashMap<String, Column> getColumnData() {
         return this.columnData;
     }
 
-    public void setColumnData(LinkedHashMap<String, List<Integer>> columnData) {
+    public void setColumnData(LinkedHashMap<String, Column> columnData) {
         this.columnData = columnData;
     }
 
-    //----------------
-    // Other Methods
-    //----------------
+    public Column getColumn(String columnName) {
+        return this.columnData.get(columnName);
+    }
 
-    private void resetRowData() {
-        setColumnNames(new ArrayList<>());
-        setRowData(new ArrayList<>());
+    /**
+     * Add a column to the end of the table, or replace the column
+     * with the same name.
+     */
+    public void addColumn(String columnName, Column column) {
+        this.columnData.put(columnName, column);
     }
 
+    public boolean containsColumn(String columnName) {
+        return this.columnData.containsKey(columnName);
+    }
+
+    public int getColumnNumber() {
+        return this.columnData.size();
+    }
+
+    public int getRowNumber() {
+        if (this.columnData.isEmpty()) {
+            return 0;
+        }
+        return this.columnData.values().iterator().next().size();
+    }
 
     /**
-     * Organize the column ordered data into the row form.
-     * Be aware that we need to have column data and column names first.
-     * @param dataReader
+     * @return the page files the columns of the table are read from,
+     * including the ones behind views.
      */
-    public void updateRowData(DataReader dataReader) {
-        // To avoid adding duplicate values,
-        // we need to clear the column names and the row data first.
-        resetRowData();
-
-        // If the current table is created through reading file, then we just
-        // need to copy the column names and row data from the file reader.
-        if (dataReader != null) {
-            setColumnNames((List<String>) dataReader.getTableHead().clone());
-            setRowData((List<List<Integer>>) dataReader.getFormalTypeValues().clone());
-        } else {
-            // Otherwise, we need to generate row data from the existing columns.
-
-            // Update column name
-            for (String columnName : getColumnData().keySet()) {
-                getColumnNames().add(columnName);
-            }
+    public Set<PageFile> getPageFiles() {
+        Set<PageFile> files = new HashSet<>();
+        for (Column column : this.columnData.values()) {
+            column.addPageFiles(files);
+        }
+        return files;
+    }
 
-            // Update row data.
-            // To facilitate data processing, we put all the column
-            // data into an ArrayList.
-            List<List<Integer>> tmpTable = new ArrayList<>();
-            for (String columnName : columnNames) {
-                tmpTable.add(getColumnData().get(columnName));
-            }
+    //----------------
+    // Other Methods
+    //----------------
 
-            // The total number of rows
-            int rowNumber = getColumnData().get(getColumnNames().get(0)).size();
-            for (int i = 0; i < rowNumber; i++) {
-                getRowData().add(new ArrayList<>());
+    /**
+     * Get a row-ordered view of the table. Nothing is copied, each value is
+     * read from the underlying column when it is accessed, so the view is
+     * read only.
+     *
+     * @return a list of rows, each row is a list of values in column order.
+     */
+    public List<List<Integer>> getRowData() {
+        final Column[] columns = this.columnData.values().toArray(new Column[0]);
+        final int rowNumber = getRowNumber();
+
+        return new AbstractList<List<Integer>>() {
+            @Override
+            public List<Integer> get(final int row) {
+                if (row < 0 || row >= rowNumber) {
+                    throw new IndexOutOfBoundsException("Row " + row + " out of " + rowNumber);
+                }
+                return new AbstractList<Integer>() {
+                    @Override
+                    public Integer get(int column) {
+                        return columns[column].get(row);
+                    }
+
+                    @Override
+                    public int size() {
+                        return columns.length;
+                    }
+                };
             }
 
-            for (List<Integer> column : tmpTable) {
-                for (int j = 0; j < column.size(); j++) {
-                    getRowData().get(j).add(column.get(j));
-                }
+            @Override
+            public int size() {
+                return rowNumber;
             }
-        }
+        };
     }
 
-
     /**
-     * Organize the row ordered data into the column form.
-     * Be aware that we need to have row data and the column names first.
+     * Copy one row of the table into an array.
+     *
+     * @param row the index of the row.
+     * @return the values of the row in column order.
      */
-    public void updateColumnData() {
-        // To avoid duplicate insertion, we should initialize column data first.
-        setColumnData(new LinkedHashMap<>());
-
-        int rowNumber = getRowData().size();
-        int columnNumber = getColumnNames().size();
-
-        for (int i = 0; i < columnNumber; i++) {
-            String currentColumnName = getColumnNames().get(i);
-            getColumnData().put(currentColumnName, new ArrayList<>());
-            for (int j = 0; j < rowNumber; j++) {
-                List<Integer> currentRowData = getRowData().get(j);
-                getColumnData().get(currentColumnName).add(currentRowData.get(i));
-            }
+    public int[] getRow(int row) {
+        int[] result = new int[getColumnNumber()];
+        int i = 0;
+        for (Column column : this.columnData.values()) {
+            result[i++] = column.get(row);
         }
+        return result;
     }
 
+    /**
+     * @return the statistics of every column, in column order. Columns that
+     * don't have them yet are scanned once.
+     */
+    public LinkedHashMap<String, ColumnStatistics> getStatistics() {
+        LinkedHashMap<String, ColumnStatistics> statistics = new LinkedHashMap<>();
+        for (Map.Entry<String, Column> entry : this.columnData.entrySet()) {
+            statistics.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        return statistics;
+    }
 
     /**
-     * Import data from current file.
-     * The method is overloaded, one is without any parameter and will use
-     * the object's fileReader, the other one should be given a specific
-     * fileReader.
+     * Import data from current file. Every column that was read into memory
+     * is stored in the smallest encoding that fits its values, paged columns
+     * stay on disk as they are. The statistics and the zone map of every
+     * column are built right away, so later operators can rely on them.
      */
     public void importFile(DataReader dataReader) {
-
-        // For each column, create a corresponding ArrayList first.
-        for (int i = 0; i < dataReader.getTableHead().size(); i++) {
-            getColumnData().put(dataReader.getTableHead().get(i), new ArrayList<>());
+        List<String> tableHead = dataReader.getTableHead();
+        List<Column> columns = dataReader.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            if (column instanceof IntVector) {
+                column = ColumnEncoder.encode((IntVector) column);
+            }
+            column.getStatistics();
+            column.getZoneMap();
+            addColumn(tableHead.get(i), column);
         }
+    }
 
-        // Add data.
-        for (int i = 0; i < dataReader.getFormalTypeValues().size(); i++) {
-            for (int j = 0; j < dataReader.getTableHead().size(); j++) {
-
-                // The column name.
-                String columnName = dataReader.getTableHead().get(j);
-
-                // The data in row order.
-                List<Integer> row = dataReader.getFormalTypeValues().get(i);
-
-                // Append each data into the corresponding column.
-                getColumnData().get(columnName).add(row.get(j));
+    /**
+     * Append a batch of rows to the end of the table. The batch is matched
+     * to the table by column name, so its columns may come in any order.
+     * The columns of the table are replaced by grown versions, tables that
+     * share the old columns don't see the new rows. The statistics and zone
+     * maps are updated from the batch alone, an append costs O(batch)
+     * amortized whatever the size of the table.
+     *
+     * @param names the column names of the batch.
+     * @param columns the columns of the batch, they must have the same size.
+     * @throws IllegalArgumentException if the batch doesn't fit the table.
+     */
+    public void append(List<String> names, List<Column> columns) {
+        if (names.size() != getColumnNumber()) {
+            throw new IllegalArgumentException("The batch has " + names.size()
+                    + " column(s) but the table has " + getColumnNumber() + ".");
+        }
+        Map<String, Column> batch = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (!containsColumn(names.get(i))) {
+                throw new IllegalArgumentException("The table doesn't have a column named "
+                        + names.get(i) + ".");
+            }
+            if (batch.containsKey(names.get(i))) {
+                throw new IllegalArgumentException("The batch has two columns named "
+                        + names.get(i) + ".");
             }
+            if (columns.get(i).size() != columns.get(0).size()) {
+                throw new IllegalArgumentException("The columns of the batch must have "
+                        + "the same size.");
+            }
+            batch.put(names.get(i), columns.get(i));
+        }
+
+        for (Map.Entry<String, Column> entry : this.columnData.entrySet()) {
+            entry.setValue(AppendableColumn.append(entry.getValue(), batch.get(entry.getKey())));
         }
-        // Update column names and row data.
-        updateRowData(dataReader);
     }
 
     /**
@@ -186,11 +249,12 @@ public class Table {
      * @throws IOException if anything goes wrong when writing file.
      */
     public void outputFile(String fileName) throws IOException {
-        DataWriter.writeFile(getColumnNames(), getRowData(), fileName);
+        DataWriter.writeFile(getColumnNames(), new ArrayList<>(getColumnData().values()), fileName);
     }
 
     public void outputFile(String fileName, String delimiter) throws IOException {
-        DataWriter.writeFile(getColumnNames(), getRowData(), fileName, delimiter);
+        DataWriter.writeFile(getColumnNames(), new ArrayList<>(getColumnData().values()),
+                fileName, delimiter);
     }
 
     /**
@@ -198,23 +262,9 @@ public class Table {
      */
     public void showTable() {
         System.out.println();
-        for (int i = 0; i < getColumnNames().size(); i++) {
-            System.out.print(getColumnNames().get(i));
-            if (i < getColumnNames().size() - 1) {
-                System.out.print("|");
-            }
-        }
-        System.out.println();
-        for (int i = 0; i < getRowData().size(); i++) {
-            for (int j = 0; j < getRowData().get(i).size(); j++) {
-                System.out.print(getRowData().get(i).get(j));
-                if (j < getRowData().get(i).size() - 1) {
-                    System.out.print("|");
-                }
-            }
-            System.out.println();
-        }
+        System.out.println(String.join("|", getColumnNames()));
+        DataWriter.writeStandardOutput(new ArrayList<>(getColumnData().values()), "|");
         System.out.println();
-        System.out.println("There are " + getRowData().size() + " row(s) in the table.");
+        System.out.println("There are " + getRowNumber() + " row(s) in the table.");
     }
 }
@@ -0,0 +1,89 @@
+package com.nyu.database.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the k smallest longs offered to it, in a max-heap of at most k
+ * primitive longs. The root is the largest value kept, so a value that
+ * can't make it is rejected with one comparison. n offers cost
+ * O(n log k) time and O(k) memory.
+ */
+public class BoundedLongHeap {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private final long[] heap;
+    private int size;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param k the number of values to keep.
+     */
+    public BoundedLongHeap(int k) {
+        this.heap = new long[k];
+        this.size = 0;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int size() {
+        return size;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Keep the value if it is among the k smallest ones so far.
+     */
+    public void offer(long value) {
+        if (size < heap.length) {
+            // Sift up.
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] >= value) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        } else if (size > 0 && value < heap[0]) {
+            // Replace the root and sift down.
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] > heap[child]) {
+                    child++;
+                }
+                if (heap[child] <= value) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = value;
+        }
+    }
+
+    /**
+     * @return the values kept, in ascending order.
+     */
+    public long[] toSortedArray() {
+        long[] result = Arrays.copyOf(heap, size);
+        Arrays.sort(result);
+        return result;
+    }
+}
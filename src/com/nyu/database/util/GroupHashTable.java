@@ -0,0 +1,151 @@
+package com.nyu.database.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash table from composite keys, a fixed number of ints each, to dense
+ * group ids 0, 1, 2, ... given in the order the keys first appear.
+ *
+ * It uses open addressing with linear probing. The keys are packed in one
+ * int array, keyWidth ints per group, so a group costs a few ints and no
+ * object. Every slot also keeps the hash of its key, which settles most
+ * mismatches without looking at the key and makes growing cheap.
+ */
+public class GroupHashTable {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final int EMPTY = -1;
+
+    private final int keyWidth;
+
+    // Slot -> group id, or EMPTY, and the hash of the key of that group.
+    private int[] slots;
+    private int[] slotHashes;
+    private int mask;
+
+    // Group * keyWidth + j -> the j-th int of the key of the group.
+    private int[] keys;
+    private int groupNumber;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param keyWidth the number of ints of a key.
+     * @param expectedGroups the number of groups to make room for.
+     */
+    public GroupHashTable(int keyWidth, int expectedGroups) {
+        int capacity = Integer.highestOneBit(Math.max(expectedGroups, 4) * 2 - 1) << 1;
+        this.keyWidth = keyWidth;
+        this.slots = new int[capacity];
+        this.slotHashes = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(slots, EMPTY);
+        this.keys = new int[Math.max(expectedGroups, 4) * Math.max(keyWidth, 1)];
+        this.groupNumber = 0;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int getKeyWidth() {
+        return keyWidth;
+    }
+
+    public int getGroupNumber() {
+        return groupNumber;
+    }
+
+    /**
+     * @return the j-th int of the key of the group.
+     */
+    public int getKey(int group, int j) {
+        return keys[group * keyWidth + j];
+    }
+
+    /**
+     * Copy the key of the group into dst.
+     */
+    public void copyKey(int group, int[] dst) {
+        System.arraycopy(keys, group * keyWidth, dst, 0, keyWidth);
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @param key the key, keyWidth ints.
+     * @return the group of the key. A key that wasn't seen yet gets the
+     * next group id.
+     */
+    public int findOrAdd(int[] key) {
+        int hash = hash(key);
+        int slot = hash & mask;
+        while (slots[slot] != EMPTY) {
+            int group = slots[slot];
+            if (slotHashes[slot] == hash && keyEquals(group, key)) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int group = groupNumber++;
+        if ((group + 1) * keyWidth > keys.length) {
+            keys = Arrays.copyOf(keys, Math.max(keys.length * 2, (group + 1) * keyWidth));
+        }
+        System.arraycopy(key, 0, keys, group * keyWidth, keyWidth);
+        slots[slot] = group;
+        slotHashes[slot] = hash;
+        // Keep the load factor under 1/2, the probes stay short.
+        if (groupNumber * 2 > slots.length) {
+            grow();
+        }
+        return group;
+    }
+
+    private boolean keyEquals(int group, int[] key) {
+        int offset = group * keyWidth;
+        for (int j = 0; j < keyWidth; j++) {
+            if (keys[offset + j] != key[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        int[] oldSlots = slots;
+        int[] oldHashes = slotHashes;
+        slots = new int[oldSlots.length * 2];
+        slotHashes = new int[oldSlots.length * 2];
+        mask = slots.length - 1;
+        Arrays.fill(slots, EMPTY);
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != EMPTY) {
+                int slot = oldHashes[i] & mask;
+                while (slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = oldSlots[i];
+                slotHashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    /**
+     * Combine the hashes of the ints of a key.
+     */
+    public static int hash(int[] key) {
+        int hash = 0;
+        for (int value : key) {
+            hash = Integer.rotateLeft(hash, 7) ^ IntHashSet.hash(value);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,145 @@
+package com.nyu.database.util;
+
+import java.util.Arrays;
+
+/**
+ * A set of ints with open addressing and linear probing. Unlike a
+ * HashSet&lt;Integer&gt;, it doesn't create an object per element.
+ */
+public class IntHashSet {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    // Marks a free slot. The value itself is tracked by containsEmpty.
+    private static final int EMPTY = 0;
+
+    private int[] keys;
+    private int mask;
+    private int size;
+    private boolean containsEmpty;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    public IntHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the number of elements to make room for.
+     */
+    public IntHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        this.keys = new int[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+        this.containsEmpty = false;
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    public int size() {
+        return size;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @return true if the value was not in the set yet.
+     */
+    public boolean add(int value) {
+        if (value == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int slot = hash(value) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        size++;
+        // Keep the load factor under one half.
+        if (2 * size > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+        int slot = hash(value) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @return the elements of the set, in no particular order.
+     */
+    public int[] toArray() {
+        int[] result = new int[size];
+        int n = 0;
+        if (containsEmpty) {
+            result[n++] = EMPTY;
+        }
+        for (int key : keys) {
+            if (key != EMPTY) {
+                result[n++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the elements of the set in ascending order.
+     */
+    public int[] toSortedArray() {
+        int[] result = toArray();
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        keys = new int[capacity];
+        mask = capacity - 1;
+        for (int key : oldKeys) {
+            if (key != EMPTY) {
+                int slot = hash(key) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    /**
+     * Spread the bits of the value, so that sequential values don't end
+     * up in one long cluster.
+     */
+    public static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
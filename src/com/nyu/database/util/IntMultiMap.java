@@ -0,0 +1,114 @@
+package com.nyu.database.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from int keys to lists of row ids, used as the build side of
+ * a hash join. Row ids must be in [0, rowNumber).
+ *
+ * Every distinct key has one entry in its bucket, and the rows of a key
+ * are chained through the next array. A key that repeats a million times
+ * therefore costs one step to skip while probing for another key of the
+ * same bucket, skewed data doesn't make the chains long.
+ */
+public class IntMultiMap {
+
+    //----------------
+    // Attributes
+    //----------------
+
+    private static final int NONE = -1;
+
+    // Bucket -> first entry of the bucket.
+    private final int[] buckets;
+    private final int mask;
+
+    // Entry -> key, next entry of the same bucket, first and last row.
+    private final int[] entryKeys;
+    private final int[] entryNext;
+    private final int[] entryFirst;
+    private final int[] entryLast;
+    private int entryNumber;
+
+    // Row -> next row with the same key.
+    private final int[] rowNext;
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    /**
+     * @param rowNumber the number of rows that will be added.
+     */
+    public IntMultiMap(int rowNumber) {
+        int capacity = Integer.highestOneBit(Math.max(rowNumber, 4) * 2 - 1) << 1;
+        this.buckets = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(buckets, NONE);
+
+        this.entryKeys = new int[rowNumber];
+        this.entryNext = new int[rowNumber];
+        this.entryFirst = new int[rowNumber];
+        this.entryLast = new int[rowNumber];
+        this.entryNumber = 0;
+        this.rowNext = new int[rowNumber];
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    /**
+     * @return the number of distinct keys.
+     */
+    public int getKeyNumber() {
+        return entryNumber;
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * Add a row under a key. The rows of a key are kept in the order they
+     * were added.
+     */
+    public void put(int key, int row) {
+        rowNext[row] = NONE;
+        int bucket = IntHashSet.hash(key) & mask;
+        for (int entry = buckets[bucket]; entry != NONE; entry = entryNext[entry]) {
+            if (entryKeys[entry] == key) {
+                rowNext[entryLast[entry]] = row;
+                entryLast[entry] = row;
+                return;
+            }
+        }
+        int entry = entryNumber++;
+        entryKeys[entry] = key;
+        entryFirst[entry] = row;
+        entryLast[entry] = row;
+        entryNext[entry] = buckets[bucket];
+        buckets[bucket] = entry;
+    }
+
+    /**
+     * @return the first row added under the key, or -1 if there is none.
+     */
+    public int first(int key) {
+        int bucket = IntHashSet.hash(key) & mask;
+        for (int entry = buckets[bucket]; entry != NONE; entry = entryNext[entry]) {
+            if (entryKeys[entry] == key) {
+                return entryFirst[entry];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return the row added after the given one under the same key, or -1
+     * if it was the last one.
+     */
+    public int next(int row) {
+        return rowNext[row];
+    }
+}
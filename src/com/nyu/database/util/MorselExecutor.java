@@ -0,0 +1,206 @@
+package com.nyu.database.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the operators on all the cores, morsel by morsel.
+ *
+ * The rows of a table are cut into morsels, ranges of MORSEL_SIZE rows that
+ * always start at a multiple of MORSEL_SIZE. A task takes the next morsel
+ * from a shared counter until there is none left, so a slow morsel never
+ * holds up the others, and the tasks run on one work-stealing pool shared
+ * by every operator. The results of the morsels are handed back in morsel
+ * order, so an operator gives the same result however many threads ran it.
+ *
+ * Small inputs are run on the calling thread, morsel by morsel as well.
+ */
+public final class MorselExecutor {
+
+    /**
+     * Computes the result of rows [from, from + length).
+     */
+    public interface MorselFunction<T> {
+        T apply(int from, int length);
+    }
+
+    /**
+     * Adds rows [from, from + length) to the state of a task.
+     */
+    public interface MorselConsumer<S> {
+        void accept(S state, int from, int length);
+    }
+
+    //----------------
+    // Attributes
+    //----------------
+
+    public static final int MORSEL_SIZE = 1 << 16;
+
+    // Below this number of rows, starting tasks costs more than it saves.
+    private static final int PARALLEL_THRESHOLD = 4 * MORSEL_SIZE;
+
+    // The threads are daemons, they don't keep the program alive.
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    //----------------
+    // Constructor(s)
+    //----------------
+
+    private MorselExecutor() {
+    }
+
+    //----------------
+    // Accessors
+    //----------------
+
+    /**
+     * @return the pool the operators run on, for the work that isn't cut
+     * into morsels of rows, like the chunks of a file.
+     */
+    public static ForkJoinPool getPool() {
+        return POOL;
+    }
+
+    public static int getParallelism() {
+        return POOL.getParallelism();
+    }
+
+    //----------------
+    // Other Methods
+    //----------------
+
+    /**
+     * @return the number of morsels of rowNumber rows.
+     */
+    public static int getMorselNumber(int rowNumber) {
+        return (rowNumber + MORSEL_SIZE - 1) / MORSEL_SIZE;
+    }
+
+    /**
+     * @return whether rowNumber rows are worth running on several threads.
+     */
+    public static boolean isParallel(int rowNumber) {
+        return rowNumber >= PARALLEL_THRESHOLD && getParallelism() > 1;
+    }
+
+    /**
+     * Compute the result of every morsel.
+     *
+     * @return the results, the one of morsel m at index m.
+     */
+    public static <T> List<T> map(int rowNumber, MorselFunction<T> function) {
+        int morselNumber = getMorselNumber(rowNumber);
+        // Every task writes to the slots of its own morsels only, they can
+        // share the array.
+        Object[] results = new Object[morselNumber];
+        fold(rowNumber, () -> results, (state, from, length) ->
+                state[from / MORSEL_SIZE] = function.apply(from, length));
+        List<T> list = new ArrayList<>(morselNumber);
+        for (Object result : results) {
+            @SuppressWarnings("unchecked")
+            T t = (T) result;
+            list.add(t);
+        }
+        return list;
+    }
+
+    /**
+     * Let every task add the morsels it takes to a state of its own, like a
+     * hash table, so the tasks share nothing while they run. Which morsels
+     * go to which state depends on the scheduling, only the combination of
+     * the states is deterministic.
+     *
+     * @param newState creates the state of a task.
+     * @return the states of the tasks.
+     */
+    public static <S> List<S> fold(int rowNumber, Supplier<S> newState,
+                                   MorselConsumer<S> consumer) {
+        int morselNumber = getMorselNumber(rowNumber);
+        if (!isParallel(rowNumber)) {
+            S state = newState.get();
+            for (int morsel = 0; morsel < morselNumber; morsel++) {
+                int from = morsel * MORSEL_SIZE;
+                consumer.accept(state, from, Math.min(MORSEL_SIZE, rowNumber - from));
+            }
+            List<S> states = new ArrayList<>();
+            states.add(state);
+            return states;
+        }
+
+        AtomicInteger nextMorsel = new AtomicInteger();
+        List<Callable<S>> tasks = new ArrayList<>();
+        for (int i = 0; i < Math.min(getParallelism(), morselNumber); i++) {
+            tasks.add(() -> {
+                S state = newState.get();
+                int morsel;
+                while ((morsel = nextMorsel.getAndIncrement()) < morselNumber) {
+                    int from = morsel * MORSEL_SIZE;
+                    consumer.accept(state, from, Math.min(MORSEL_SIZE, rowNumber - from));
+                }
+                return state;
+            });
+        }
+        return invokeAll(tasks);
+    }
+
+    /**
+     * Run the tasks on the pool and wait for all of them.
+     *
+     * @return the results, in the order of the tasks.
+     */
+    public static <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        if (tasks.size() == 1 || getParallelism() == 1) {
+            List<T> results = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                results.add(call(task));
+            }
+            return results;
+        }
+        List<T> results = new ArrayList<>();
+        for (Future<T> future : POOL.invokeAll(tasks)) {
+            results.add(get(future));
+        }
+        return results;
+    }
+
+    /**
+     * Wait for a task of the pool. A runtime exception of the task is
+     * thrown again as it is.
+     */
+    public static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a task.", e);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    private static <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (Exception e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException(cause);
+    }
+}